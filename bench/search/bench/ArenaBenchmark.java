@@ -0,0 +1,60 @@
+package search.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import search.SearchStats;
+import search.npuzzle.ArenaAStar;
+import search.npuzzle.NPuzzleState;
+
+/**
+ * A* over a NodeArena on the same instance set as SearchBenchmark.myHA, for the packed board sizes.
+ * The arena is allocated once, so the searches themselves allocate almost nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArenaBenchmark {
+	/** The number of instances in the set */
+	private static final int INSTANCES = 16;
+
+	@Param({ "3", "4" })
+	public int size;
+
+	@Param({ "2" })
+	public int heuristic;
+
+	@Param({ "false", "true" })
+	public boolean direct;
+
+	private NPuzzleState[] instances;
+	private ArenaAStar search;
+
+	@Setup
+	public void setup() {
+		instances = Instances.standard(size, INSTANCES);
+		search = ArenaAStar.withBudget(size, heuristic, 256L << 20, direct);
+	}
+
+	@Benchmark
+	public void arenaAStar(Blackhole bh) {
+		for (NPuzzleState s : instances) {
+			bh.consume(search.solve(s, new SearchStats()));
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package search.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar.
+ * Without arguments every benchmark runs with the GC profiler, so the allocation rate
+ * (gc.alloc.rate.norm, bytes per operation) is reported next to the time; with arguments
+ * the standard JMH command line is used.
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		Options options = new OptionsBuilder()
+				.include("search\\.bench\\..*")
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,63 @@
+package search.bench;
+
+import java.util.Random;
+
+import search.ActionStatePair;
+import search.npuzzle.NPuzzleState;
+
+/**
+ * Fixed, seeded instance sets for the benchmarks, so every run measures the same boards.
+ */
+final class Instances {
+	/** The seed of every instance set */
+	static final long SEED = 3702L;
+
+	private Instances() {
+	}
+
+	/**
+	 * The number of random moves used to shuffle a board of the given size, chosen so that
+	 * a single A* search with Manhattan distance finishes in milliseconds.
+	 * @param size the side length of the board
+	 * @return the length of the random walk
+	 */
+	static int walkLength(int size) {
+		return size <= 3 ? 40 : size == 4 ? 36 : 30;
+	}
+
+	/**
+	 * Generate boards by random walks from the goal that never undo the previous move.
+	 * @param size the side length of the board
+	 * @param count the number of boards
+	 * @param walkLength the number of moves of each walk
+	 * @param seed the random seed
+	 * @return the boards
+	 */
+	static NPuzzleState[] generate(int size, int count, int walkLength, long seed) {
+		Random random = new Random(seed ^ size);
+		NPuzzleState[] boards = new NPuzzleState[count];
+		for (int i = 0; i < count; i++) {
+			NPuzzleState state = new NPuzzleState(size), previous = null;
+			for (int m = 0; m < walkLength; m++) {
+				ActionStatePair[] next = state.successor();
+				NPuzzleState pick;
+				do {
+					pick = (NPuzzleState) next[random.nextInt(next.length)].getState();
+				} while (previous != null && pick.equals(previous));
+				previous = state;
+				state = pick;
+			}
+			boards[i] = state;
+		}
+		return boards;
+	}
+
+	/**
+	 * @param size the side length of the board
+	 * @param count the number of boards
+	 * @return the standard instance set for that size
+	 */
+	static NPuzzleState[] standard(int size, int count) {
+		return generate(size, count, walkLength(size), SEED);
+	}
+}
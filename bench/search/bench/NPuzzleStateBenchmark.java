@@ -0,0 +1,124 @@
+package search.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import search.ActionStatePair;
+import search.Node;
+import search.npuzzle.NPuzzleHeuristic;
+import search.npuzzle.NPuzzleState;
+
+/**
+ * Benchmarks of the per-node primitives of NPuzzleState and Node.
+ * Each invocation works on the next board of a fixed, seeded set.
+ * Boards above 4x4 use the Vector API kernels; add "-jvmArgsAppend -Dnpuzzle.vector=false" to
+ * measure the scalar ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NPuzzleStateBenchmark {
+	/** The number of boards cycled through */
+	private static final int BOARDS = 256;
+
+	@Param({ "3", "4", "5", "8" })
+	public int size;
+
+	private NPuzzleState[] boards;
+	private NPuzzleState[] copies;
+	private int[][][] arrays;
+	private int next;
+
+	@Setup
+	public void setup() {
+		boards = Instances.standard(size, BOARDS);
+		copies = new NPuzzleState[BOARDS];
+		arrays = new int[BOARDS][][];
+		for (int i = 0; i < BOARDS; i++) {
+			copies[i] = new NPuzzleState(boards[i]);
+			arrays[i] = boards[i].toArray();
+		}
+	}
+
+	private int index() {
+		next = (next + 1) & (BOARDS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public ActionStatePair[] successor() {
+		return boards[index()].successor();
+	}
+
+	@Benchmark
+	public boolean equalsSameBoard() {
+		int i = index();
+		return boards[i].equals(copies[i]);
+	}
+
+	@Benchmark
+	public boolean equalsOtherBoard() {
+		int i = index();
+		return boards[i].equals(boards[(i + 1) & (BOARDS - 1)]);
+	}
+
+	@Benchmark
+	public boolean goal() {
+		return boards[index()].goal();
+	}
+
+	@Benchmark
+	public int getH1() {
+		return boards[index()].getH1();
+	}
+
+	@Benchmark
+	public int getH2() {
+		return boards[index()].getH2();
+	}
+
+	@Benchmark
+	public int getH3() {
+		return boards[index()].getH3();
+	}
+
+	@Benchmark
+	public int getH4() {
+		return boards[index()].getH4();
+	}
+
+	@Benchmark
+	public int getH6() {
+		return NPuzzleHeuristic.LINEAR_CONFLICT.estimate(boards[index()]);
+	}
+
+	@Benchmark
+	public int getH7() {
+		return NPuzzleHeuristic.WALKING_DISTANCE.estimate(boards[index()]);
+	}
+
+	/** Building a board from rows evaluates the key and the heuristics from scratch */
+	@Benchmark
+	public NPuzzleState fromArray() {
+		return new NPuzzleState(arrays[index()]);
+	}
+
+	@Benchmark
+	public Node[] expand() {
+		return new Node(boards[index()]).expand();
+	}
+}
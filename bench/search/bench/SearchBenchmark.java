@@ -0,0 +1,63 @@
+package search.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import search.Node;
+import search.SearchStats;
+import search.npuzzle.NPuzzleHeuristic;
+import search.npuzzle.NPuzzleState;
+
+/**
+ * End-to-end searches over a fixed, seeded instance set.
+ * Each invocation solves every instance of the set once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+	/** The number of instances in the set */
+	private static final int INSTANCES = 16;
+
+	@Param({ "3", "4", "5" })
+	public int size;
+
+	@Param({ "2", "6", "7" })
+	public int heuristic;
+
+	private NPuzzleState[] instances;
+
+	@Setup
+	public void setup() {
+		instances = Instances.standard(size, INSTANCES);
+	}
+
+	@Benchmark
+	public void myHA(Blackhole bh) {
+		for (NPuzzleState s : instances) {
+			bh.consume(Node.myHA(s, NPuzzleHeuristic.numbered(heuristic), new SearchStats()));
+		}
+	}
+
+	@Benchmark
+	public void myHG(Blackhole bh) {
+		for (NPuzzleState s : instances) {
+			bh.consume(Node.myHG(s, NPuzzleHeuristic.numbered(heuristic), new SearchStats()));
+		}
+	}
+}
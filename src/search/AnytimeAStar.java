@@ -0,0 +1,261 @@
+package search;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Anytime repairing A* (ARA*). A weighted A* search with a large weight finds a first solution
+ * quickly; the weight is then lowered step by step and the search goes on from where it stopped,
+ * so every pass only repairs the part of the tree the new weight orders differently.
+ *
+ * In a pass with weight w, nodes are taken in order of g + w*h and every state is expanded at most
+ * once; a state that gets a cheaper path after it was expanded waits (inconsistent) until the next
+ * pass. A pass ends when no open node has a priority below the cost of the best solution, which then
+ * costs at most w times the optimum. The bound published with each solution is the smaller of w and
+ * the solution cost divided by the lowest g + h of all open and inconsistent nodes. The search ends
+ * when a pass with weight 1 ends (the solution is optimal), or at the deadline. The bounds assume
+ * a consistent heuristic, as the Manhattan distance is.
+ */
+public final class AnytimeAStar {
+	/** The expansions between two reads of the clock */
+	private static final int DEADLINE_CHECK = 256;
+
+	/** A state seen by the search is in none of the lists, open, closed, or inconsistent */
+	private static final byte NONE = 0, OPEN = 1, CLOSED = 2, INCONS = 3;
+
+	/**
+	 * A solution and how far from optimal it is proven to be.
+	 */
+	public static final class Solution {
+		private final Node goal;
+		private final double bound;
+		private final long nanos;
+
+		Solution(Node goal, double bound, long nanos) {
+			this.goal = goal;
+			this.bound = bound;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return the goal node, whose path is the solution
+		 */
+		public Node getGoal() {
+			return goal;
+		}
+
+		/**
+		 * @return the cost of the solution
+		 */
+		public double getCost() {
+			return goal.getCost();
+		}
+
+		/**
+		 * @return the most the cost can exceed the optimum by, as a factor (1 if optimal; infinite
+		 * if the deadline came before the first pass ended)
+		 */
+		public double getBound() {
+			return bound;
+		}
+
+		/**
+		 * @return the time from the start of the search to the solution, in milliseconds
+		 */
+		public long getMillis() {
+			return nanos / 1000000;
+		}
+
+		/**
+		 * @return the solution on one tab-separated line
+		 */
+		public String toString() {
+			return "cost " + getCost() + "\tbound " + String.format(Locale.ROOT, "%.3f", bound) + "\ttime " + getMillis() + "ms";
+		}
+	}
+
+	/**
+	 * Receives every solution that improves on the previous one, as soon as it is found.
+	 */
+	public interface Listener {
+		/**
+		 * @param solution a cheaper solution, or the same one with a tighter bound
+		 */
+		void improved(Solution solution);
+	}
+
+	/** What the search knows of a state */
+	private static final class Entry {
+		/** The cheapest node of the state found so far */
+		Node node;
+		final int h;
+		byte list = NONE;
+
+		Entry(Node node, int h) {
+			this.node = node;
+			this.h = h;
+		}
+	}
+
+	private final Heuristic heuristic;
+	private final Listener listener;
+	private final SearchStats stats;
+	private final long start, deadline;
+	private final Map<State, Entry> entries = new HashMap<State, Entry>();
+	private BucketQueue open = new BucketQueue();
+	private double weight;
+	/** The best goal node found so far, or null */
+	private Node incumbent;
+	/** The last solution published, or null */
+	private Solution best;
+
+	private AnytimeAStar(Heuristic heuristic, long millis, Listener listener, SearchStats stats) {
+		this.heuristic = heuristic;
+		this.listener = listener;
+		this.stats = stats;
+		this.start = System.nanoTime();
+		this.deadline = millis == Long.MAX_VALUE ? Long.MAX_VALUE : start + millis * 1000000;
+	}
+
+	/**
+	 * Search with ARA*.
+	 * @param initial initial state of the puzzle
+	 * @param heuristic integer value of the desired (admissible) heuristic
+	 * @param weight the weight of the first pass, at least 1
+	 * @param step the amount the weight is lowered by after each pass
+	 * @param millis the time allowed, or Long.MAX_VALUE to run until the solution is optimal
+	 * @param listener receives each improved solution, or null
+	 * @param stats receives the search statistics, and limits the number of generated nodes
+	 * @return the best solution found, or null if none was found in time (or the node limit was reached first)
+	 */
+	public static Solution search(State initial, int heuristic, double weight, double step, long millis, Listener listener, SearchStats stats) {
+		return search(initial, Heuristic.numbered(heuristic), weight, step, millis, listener, stats);
+	}
+
+	/**
+	 * Search with ARA* using a heuristic.
+	 * @param initial initial state of the puzzle
+	 * @param heuristic the heuristic, admissible for the bounds to hold
+	 * @param weight the weight of the first pass, at least 1
+	 * @param step the amount the weight is lowered by after each pass
+	 * @param millis the time allowed, or Long.MAX_VALUE to run until the solution is optimal
+	 * @param listener receives each improved solution, or null
+	 * @param stats receives the search statistics, and limits the number of generated nodes
+	 * @return the best solution found, or null if none was found in time (or the node limit was reached first)
+	 */
+	public static Solution search(State initial, Heuristic heuristic, double weight, double step, long millis, Listener listener, SearchStats stats) {
+		if (weight < 1 || step <= 0)
+			throw new IllegalArgumentException("Need weight >= 1 and step > 0: " + weight + ", " + step);
+		AnytimeAStar search = new AnytimeAStar(heuristic, millis, listener, stats);
+		stats.start();
+		try {
+			return search.run(initial, weight, step);
+		} finally {
+			stats.stop();
+		}
+	}
+
+	private Solution run(State initial, double initialWeight, double step) {
+		weight = initialWeight;
+		Node root = new Node(initial);
+		Entry e = new Entry(root, Node.heuristic(initial, heuristic, stats));
+		entries.put(initial, e);
+		if (initial.goal()) incumbent = root;
+		e.list = OPEN;
+		open.put(priority(e), 0, root);
+
+		while (true) {
+			boolean finished = improvePath();
+			if (incumbent != null) publish(finished ? passBound() : carriedBound());
+			if (!finished || weight <= 1 || best != null && best.bound <= 1 || System.nanoTime() > deadline) break;
+
+			// Lower the weight, and start the next pass from the open and inconsistent states //
+			weight = Math.max(1, weight - step);
+			open = new BucketQueue();
+			for (Entry s : entries.values()) {
+				if (s.list == CLOSED) s.list = NONE;
+				else if (s.list == INCONS) s.list = OPEN;
+				if (s.list == OPEN) open.put(priority(s), (int) s.node.getCost(), s.node);
+			}
+		}
+		if (best != null) stats.solved(best.goal);
+		return best;
+	}
+
+	/**
+	 * Expand nodes in order of g + weight*h until none can lead to a cheaper solution.
+	 * @return false if the search stopped at the deadline or the node limit
+	 */
+	private boolean improvePath() {
+		long expansions = 0;
+		while (open.minPriority() < (incumbent == null ? Integer.MAX_VALUE : incumbent.getCost())) {
+			if (++expansions % DEADLINE_CHECK == 0 && System.nanoTime() > deadline) return false;
+			Node node = open.getNext();
+			Entry e = entries.get(node.getState());
+			if (e.node != node || e.list != OPEN) continue;		// superseded by a cheaper path
+			e.list = CLOSED;
+			stats.expanded++;
+			if (stats.profile != null) stats.profile.expanded((int) node.getCost() + e.h, node.getDepth());
+			for (Node c : node.expand()) {
+				State cs = c.getState();
+				double cost = c.getCost();
+				Entry ce = entries.get(cs);
+				if (ce != null && ce.node.getCost() <= cost) {
+					stats.duplicates++;
+					continue;
+				}
+				if (stats.generate()) return false;
+
+				if (ce == null) {
+					ce = new Entry(c, Node.heuristic(cs, heuristic, stats));
+					entries.put(cs, ce);
+				} else {
+					ce.node = c;
+				}
+				if (cs.goal() && (incumbent == null || cost < incumbent.getCost())) incumbent = c;
+
+				// A state expanded in this pass waits for the next one //
+				if (ce.list == CLOSED) {
+					ce.list = INCONS;
+				} else if (ce.list != INCONS) {
+					ce.list = OPEN;
+					open.put(priority(ce), (int) cost, c);
+				}
+			}
+			stats.sizes(open.size(), entries.size());
+		}
+		return true;
+	}
+
+	private int priority(Entry e) {
+		return (int) (e.node.getCost() + weight * e.h);
+	}
+
+	/**
+	 * @return the bound of the incumbent after a finished pass
+	 */
+	private double passBound() {
+		double lower = Double.MAX_VALUE;
+		for (Entry e : entries.values()) {
+			if (e.list == OPEN || e.list == INCONS) lower = Math.min(lower, e.node.getCost() + e.h);
+		}
+		if (lower >= incumbent.getCost()) return 1;
+		return Math.min(weight, incumbent.getCost() / lower);
+	}
+
+	/**
+	 * @return the bound of the incumbent after an unfinished pass: the last proven bound, scaled
+	 * down if the incumbent is cheaper than the solution it was proven for
+	 */
+	private double carriedBound() {
+		if (best == null) return Double.POSITIVE_INFINITY;
+		return best.bound * incumbent.getCost() / best.getCost();
+	}
+
+	private void publish(double bound) {
+		if (best != null && incumbent == best.goal && bound >= best.bound) return;
+		best = new Solution(incumbent, Math.max(1, bound), System.nanoTime() - start);
+		if (listener != null) listener.improved(best);
+	}
+}
@@ -0,0 +1,379 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bidirectional search from the initial state towards the goal and from the goal back towards the
+ * initial state at the same time. It needs a single known goal state and moves that can be undone
+ * (every successor of a state has that state among its own successors), as in the N-Puzzle, so the
+ * backward search can simply expand nodes with the successor function.
+ *
+ * Both directions keep a hashed map of the states they reached, and the search ends when the
+ * directions meet in a way that proves the path through the meeting state is the cheapest one.
+ * The path is then stitched together into a single Node chain from the initial state, so the
+ * result can be used like that of the other searches in Node. The two directions can be run on
+ * separate threads.
+ */
+public final class BidirectionalSearch {
+
+	/**
+	 * An estimate of the cost between two states, used to guide each direction towards the start
+	 * of the other (front-to-end). It must never overestimate.
+	 */
+	public interface Distance {
+		/**
+		 * @param from the state the estimate starts at
+		 * @param to the state to reach
+		 * @return a lower bound on the cost of getting from one state to the other
+		 */
+		int estimate(State from, State to);
+	}
+
+	private BidirectionalSearch() {
+	}
+
+	/**
+	 * Bidirectional breadth-first search, for problems where every action costs 1.
+	 * Each round expands one whole layer of the direction with the smaller frontier (or of both
+	 * directions at once when run on two threads) and looks its new states up in the states reached
+	 * by the other direction; the first round that finds any such state finds a shortest path.
+	 * @param initial initial state of the puzzle
+	 * @param goal the goal state
+	 * @param parallel true to expand the backward direction on a second thread
+	 * @param stats receives the statistics of the search and holds its node limit, which is split
+	 * evenly between the two directions
+	 * @return solution if one is found, null otherwise
+	 */
+	public static Node breadthFirst(State initial, State goal, boolean parallel, SearchStats stats) {
+		stats.start();
+		Layers forward = new Layers(initial, stats), backward = new Layers(goal, stats);
+		ExecutorService second = parallel ? Executors.newSingleThreadExecutor() : null;
+		try {
+			if (initial.equals(goal)) return solved(new Node(initial), stats);
+
+			while (true) {
+				Node[] meeting;
+				if (second == null) {
+					// Grow the smaller side, it is the cheaper one to expand //
+					Layers side = forward.layer.size() <= backward.layer.size() ? forward : backward;
+					Layers other = side == forward ? backward : forward;
+					if (!side.expand() || side.layer.isEmpty()) return null;
+					meeting = side.meet(other);
+					if (side == backward && meeting != null) meeting = new Node[] { meeting[1], meeting[0] };
+				} else {
+					// Expand both layers at once, then look both up once neither map changes //
+					Future<Boolean> back = second.submit(backward.expansion());
+					boolean ok = forward.expand();
+					if (!get(back) || !ok || forward.layer.isEmpty() || backward.layer.isEmpty()) return null;
+
+					Future<Node[]> backMeeting = second.submit(backward.meeting(forward));
+					Node[] f = forward.meet(backward), b = get(backMeeting);
+					meeting = f;
+					if (b != null && (f == null || b[0].getCost() + b[1].getCost() < f[0].getCost() + f[1].getCost()))
+						meeting = new Node[] { b[1], b[0] };
+				}
+				if (meeting != null) return solved(stitch(meeting[0], meeting[1]), stats);
+			}
+		} finally {
+			if (second != null) second.shutdownNow();
+			stats.add(forward.stats);
+			stats.add(backward.stats);
+			stats.stop();
+		}
+	}
+
+	/**
+	 * Bidirectional A* with front-to-end heuristics: the forward direction estimates the cost to the
+	 * goal, the backward direction the cost to the initial state, and both are ordered by f = g + h.
+	 * Every state reached by one direction is looked up in the map of the other, which gives the
+	 * cost of the best path found so far. The smallest f in either open list is a lower bound on the
+	 * cost of the cheapest path, so the search ends as soon as the best path found costs no more than
+	 * the larger of the two.
+	 * @param initial initial state of the puzzle
+	 * @param goal the goal state
+	 * @param h the (admissible) estimate of the cost between two states
+	 * @param parallel true to run the backward direction on a second thread
+	 * @param stats receives the statistics of the search and holds its node limit, which is split
+	 * evenly between the two directions
+	 * @return solution if one is found, null otherwise
+	 */
+	public static Node frontToEnd(State initial, State goal, Distance h, boolean parallel, SearchStats stats) {
+		stats.start();
+		Incumbent best = new Incumbent();
+		final Frontier forward = new Frontier(initial, goal, true, h, best, parallel, stats);
+		final Frontier backward = new Frontier(goal, initial, false, h, best, parallel, stats);
+		forward.other = backward;
+		backward.other = forward;
+		ExecutorService second = parallel ? Executors.newSingleThreadExecutor() : null;
+		try {
+			if (initial.equals(goal)) return solved(new Node(initial), stats);
+
+			if (second == null) {
+				while (!forward.done()) {
+					// Expand the direction with the smaller open list //
+					Frontier side = forward.queue.size() <= backward.queue.size() ? forward : backward;
+					if (!side.expand()) return null;
+				}
+			} else {
+				Future<?> back = second.submit(new Runnable() {
+					public void run() {
+						backward.run();
+					}
+				});
+				forward.run();
+				get(back);
+				if (forward.stats.limitReached || backward.stats.limitReached) return null;
+			}
+			if (best.forward == null) return null;
+			return solved(stitch(best.forward, best.backward), stats);
+		} finally {
+			if (second != null) second.shutdownNow();
+			stats.add(forward.stats);
+			stats.add(backward.stats);
+			stats.stop();
+		}
+	}
+
+	private static Node solved(Node goal, SearchStats stats) {
+		stats.solved(goal);
+		return goal;
+	}
+
+	private static <T> T get(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Join the two halves of a path at the state where they meet.
+	 * The backward half is walked from the meeting state towards the goal, finding for each step the
+	 * action that leads from the state to its parent in the backward search.
+	 * @param forward the node of the forward search at the meeting state
+	 * @param backward the node of the backward search at the same state
+	 * @return the goal node of the whole path, with the initial state as its root
+	 */
+	static Node stitch(Node forward, Node backward) {
+		Node node = forward;
+		for (Node b = backward; b.getParent() != null; b = b.getParent()) {
+			State s = node.getState(), next = b.getParent().getState();
+			ActionStatePair step = null;
+			for (ActionStatePair p : s.successor()) {
+				if (p.getState().equals(next)) {
+					step = p;
+					break;
+				}
+			}
+			if (step == null)
+				throw new IllegalStateException("Move cannot be undone from " + s);
+			node = new Node(step.getState(), node, step.getAction(), node.getCost() + s.pathcost(step.getAction()));
+		}
+		return node;
+	}
+
+	/**
+	 * One direction of the breadth-first search.
+	 */
+	private static final class Layers {
+		/** The best node of every state reached so far */
+		final Map<State, Node> reached = new HashMap<State, Node>();
+		/** The nodes of the deepest layer */
+		List<Node> layer = new ArrayList<Node>();
+		final SearchStats stats;
+
+		Layers(State root, SearchStats total) {
+			Node node = new Node(root);
+			reached.put(root, node);
+			layer.add(node);
+			stats = total.part(Math.max(1, total.getNodeLimit() / 2));
+		}
+
+		/**
+		 * Replace the deepest layer by the states one step further that were not reached before.
+		 * @return false if the node limit was reached
+		 */
+		boolean expand() {
+			List<Node> next = new ArrayList<Node>();
+			for (Node node : layer) {
+				stats.expanded++;
+				for (Node c : node.expand()) {
+					if (reached.containsKey(c.getState())) {
+						stats.duplicates++;
+						continue;
+					}
+					if (stats.generate()) return false;
+					reached.put(c.getState(), c);
+					next.add(c);
+				}
+			}
+			layer = next;
+			stats.sizes(layer.size(), reached.size());
+			return true;
+		}
+
+		Callable<Boolean> expansion() {
+			return new Callable<Boolean>() {
+				public Boolean call() {
+					return expand();
+				}
+			};
+		}
+
+		/**
+		 * Look the deepest layer up in the states reached by the other direction.
+		 * @param other the other direction
+		 * @return the cheapest meeting as {node of this direction, node of the other}, or null
+		 */
+		Node[] meet(Layers other) {
+			Node[] best = null;
+			for (Node node : layer) {
+				Node o = other.reached.get(node.getState());
+				if (o != null && (best == null || node.getCost() + o.getCost() < best[0].getCost() + best[1].getCost()))
+					best = new Node[] { node, o };
+			}
+			return best;
+		}
+
+		Callable<Node[]> meeting(final Layers other) {
+			return new Callable<Node[]>() {
+				public Node[] call() {
+					return meet(other);
+				}
+			};
+		}
+	}
+
+	/**
+	 * The cheapest path found so far, shared by both directions.
+	 */
+	private static final class Incumbent {
+		volatile double cost = Double.POSITIVE_INFINITY;
+		Node forward, backward;
+
+		synchronized void offer(Node f, Node b) {
+			double c = f.getCost() + b.getCost();
+			if (c >= cost) return;
+			forward = f;
+			backward = b;
+			cost = c;
+		}
+	}
+
+	/**
+	 * One direction of the front-to-end A* search.
+	 */
+	private static final class Frontier {
+		/** The state this direction heads for (the root of the other direction) */
+		final State target;
+		final Distance h;
+		/** True for the direction that starts at the initial state */
+		final boolean forward;
+		final Incumbent best;
+		final BucketQueue queue = new BucketQueue();
+		/** The best node of every state reached so far, read by the other direction */
+		final Map<State, Node> reached;
+		final SearchStats stats;
+		Frontier other;
+		/** The smallest f in the open list, a lower bound on the cost of the cheapest path */
+		volatile int bound;
+		/** Set when either direction gives up */
+		volatile boolean stop;
+
+		Frontier(State root, State target, boolean forward, Distance h, Incumbent best, boolean parallel, SearchStats total) {
+			this.target = target;
+			this.forward = forward;
+			this.h = h;
+			this.best = best;
+			this.reached = parallel ? new ConcurrentHashMap<State, Node>() : new HashMap<State, Node>();
+			this.stats = total.part(Math.max(1, total.getNodeLimit() / 2));
+			Node node = new Node(root);
+			reached.put(root, node);
+			queue.put(estimate(root), 0, node);
+			bound = queue.minPriority();
+		}
+
+		private int estimate(State s) {
+			if (!stats.timesHeuristic()) return h.estimate(s, target);
+			long start = System.nanoTime();
+			int e = h.estimate(s, target);
+			stats.countHeuristicTime(System.nanoTime() - start);
+			return e;
+		}
+
+		/**
+		 * Expand the best node of the open list.
+		 * @return false if the node limit was reached
+		 */
+		boolean expand() {
+			Node node;
+			do {
+				node = queue.getNext();
+				if (node == null) {
+					bound = Integer.MAX_VALUE;	// nothing left, every path has been seen
+					return true;
+				}
+			} while (reached.get(node.getState()) != node);		// a cheaper path was found since
+
+			stats.expanded++;
+			for (Node c : node.expand()) {
+				State cs = c.getState();
+				Node known = reached.get(cs);
+				if (known != null && known.getCost() <= c.getCost()) {
+					stats.duplicates++;
+					continue;
+				}
+				if (stats.generate()) return false;
+				reached.put(cs, c);
+
+				// Publish the node before looking for the other direction, so that one of the two sees the other //
+				Node o = other.reached.get(cs);
+				if (o != null) {
+					if (forward) best.offer(c, o);
+					else best.offer(o, c);
+				}
+
+				queue.put((int) c.getCost() + estimate(cs), (int) c.getCost(), c);
+			}
+			stats.sizes(queue.size(), reached.size());
+			bound = queue.minPriority();
+			return true;
+		}
+
+		/**
+		 * @return true if the best path found is proven cheapest, or no path exists
+		 */
+		boolean done() {
+			int bound = Math.max(this.bound, other.bound);
+			return bound == Integer.MAX_VALUE || best.cost <= bound;
+		}
+
+		/**
+		 * Expand nodes on the calling thread until the paths found are proven cheapest or either
+		 * direction gives up.
+		 */
+		void run() {
+			while (!stop && !other.stop && !done()) {
+				if (!expand()) {
+					stop = true;
+					return;
+				}
+			}
+		}
+	}
+}
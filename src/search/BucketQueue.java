@@ -0,0 +1,113 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of nodes for small non-negative integer priorities (e.g. f values).
+ * There is one bucket per priority, and within a bucket one stack per g value, so that
+ * ties are broken in favour of the deepest node. Both put and getNext run in amortised
+ * constant time.
+ */
+public class BucketQueue {
+	/** The buckets, indexed by priority (null until used) */
+	private Bucket[] buckets = new Bucket[64];
+	/** No bucket below this priority holds a node */
+	private int min = Integer.MAX_VALUE;
+	/** The number of nodes in the queue */
+	private int size;
+
+	/**
+	 * Add a node to the queue.
+	 * @param priority the priority of the node, lower is taken first
+	 * @param g the tie-breaker within a priority, higher is taken first
+	 * @param n the node to add
+	 */
+	void put(int priority, int g, Node n) {
+		if (priority < 0 || g < 0)
+			throw new IllegalArgumentException("Negative priority " + priority + " or g " + g);
+		if (priority >= buckets.length)
+			buckets = Arrays.copyOf(buckets, Math.max(buckets.length * 2, priority + 1));
+
+		Bucket b = buckets[priority];
+		if (b == null) {
+			b = new Bucket();
+			buckets[priority] = b;
+		}
+		b.push(g, n);
+		if (priority < min) min = priority;
+		size++;
+	}
+
+	/**
+	 * Remove the node with the lowest priority (and highest g among those).
+	 * @return the node, or null if the queue is empty
+	 */
+	Node getNext() {
+		if (size == 0) return null;
+		while (buckets[min] == null || buckets[min].size == 0) min++;
+		size--;
+		return buckets[min].pop();
+	}
+
+	/**
+	 * @return the lowest priority in the queue, or Integer.MAX_VALUE if it is empty
+	 */
+	int minPriority() {
+		if (size == 0) return Integer.MAX_VALUE;
+		while (buckets[min] == null || buckets[min].size == 0) min++;
+		return min;
+	}
+
+	/**
+	 * @return the number of nodes in the queue
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the queue holds no nodes
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * The nodes of one priority, as one stack per g value.
+	 */
+	private static final class Bucket {
+		private Node[][] stacks = new Node[8][];
+		private int[] counts = new int[8];
+		/** No stack above this g holds a node */
+		private int top = -1;
+		private int size;
+
+		void push(int g, Node n) {
+			if (g >= stacks.length) {
+				int length = Math.max(stacks.length * 2, g + 1);
+				stacks = Arrays.copyOf(stacks, length);
+				counts = Arrays.copyOf(counts, length);
+			}
+			Node[] s = stacks[g];
+			if (s == null) {
+				s = new Node[4];
+				stacks[g] = s;
+			} else if (counts[g] == s.length) {
+				s = Arrays.copyOf(s, s.length * 2);
+				stacks[g] = s;
+			}
+			s[counts[g]++] = n;
+			if (g > top) top = g;
+			size++;
+		}
+
+		Node pop() {
+			while (counts[top] == 0) top--;
+			Node[] s = stacks[top];
+			Node n = s[--counts[top]];
+			s[counts[top]] = null;	// let the node be collected
+			size--;
+			return n;
+		}
+	}
+}
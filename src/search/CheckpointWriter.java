@@ -0,0 +1,127 @@
+package search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes checkpoints of a running search on a background thread.
+ *
+ * The search asks whether a checkpoint is due (a clock read, so it can ask every few thousand
+ * expansions), takes a snapshot of what it cannot share with another thread, and submits it. The
+ * snapshot is written to a temporary file that then replaces the checkpoint, so the file on disk is
+ * always a complete checkpoint. A snapshot submitted while the previous one is still being written
+ * is dropped rather than making the search wait, so the search only ever pauses for its own copy.
+ */
+public final class CheckpointWriter implements AutoCloseable {
+	/**
+	 * The part of a checkpoint written on the background thread.
+	 */
+	public interface Snapshot {
+		/**
+		 * @param out the checkpoint file
+		 * @throws IOException if the checkpoint cannot be written
+		 */
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private final File file;
+	private final long interval;
+	private long nextDue;
+	private Thread writer;
+	private volatile IOException failure;
+	private volatile long written;
+
+	/**
+	 * Create a writer.
+	 * @param file the checkpoint file (replaced by every checkpoint)
+	 * @param intervalMillis the time between checkpoints
+	 */
+	public CheckpointWriter(File file, long intervalMillis) {
+		this.file = file;
+		this.interval = intervalMillis * 1000000;
+		this.nextDue = System.nanoTime() + interval;
+	}
+
+	/**
+	 * @return the checkpoint file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true if the interval has passed since the last checkpoint and none is being written
+	 */
+	public boolean due() {
+		return System.nanoTime() >= nextDue && (writer == null || !writer.isAlive());
+	}
+
+	/**
+	 * Write a checkpoint in the background, unless one is still being written.
+	 * @param snapshot the checkpoint, which must not share anything the search goes on changing
+	 * @return true if the checkpoint will be written, false if it was dropped
+	 * @throws IOException if the last checkpoint failed
+	 */
+	public synchronized boolean submit(final Snapshot snapshot) throws IOException {
+		if (failure != null) throw failure;
+		if (writer != null && writer.isAlive()) return false;
+		nextDue = System.nanoTime() + interval;
+		writer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					File tmp = new File(file.getPath() + ".tmp");
+					try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+						snapshot.write(out);
+					}
+					Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					written++;
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		}, "checkpoint " + file.getName());
+		writer.setDaemon(true);
+		writer.start();
+		return true;
+	}
+
+	/**
+	 * Wait for the checkpoint being written, if any.
+	 * @throws IOException if it failed
+	 */
+	public synchronized void await() throws IOException {
+		if (writer != null) {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					writer.join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+		if (failure != null) throw failure;
+	}
+
+	/**
+	 * @return the number of checkpoints written so far
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	/**
+	 * Wait for the checkpoint being written, if any.
+	 * @throws IOException if it failed
+	 */
+	public void close() throws IOException {
+		await();
+	}
+}
@@ -0,0 +1,26 @@
+package search;
+
+/**
+ * Exact distances to the goal known for some states, e.g. from earlier solutions.
+ * A search can use a known distance as a perfect heuristic value, and finish the path from such a
+ * state by following the best actions instead of searching.
+ */
+public interface DistanceOracle {
+	/**
+	 * @param s a state
+	 * @return the cost of an optimal path from the state to the goal, or -1 if it is not known
+	 */
+	int distance(State s);
+
+	/**
+	 * @param s a state whose distance is known and above 0
+	 * @return the first action of an optimal path from the state, or null if it is not known
+	 */
+	Action bestAction(State s);
+
+	/**
+	 * Learn the distances of all states on an optimal solution.
+	 * @param goal the goal node of an optimal solution
+	 */
+	void learn(Node goal);
+}
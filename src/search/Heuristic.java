@@ -0,0 +1,168 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An estimate of the cost from a state to the goal. A search takes the heuristic once, and evaluates
+ * every node through the one call site of Node.estimate, which stays monomorphic (and is inlined)
+ * as long as a process searches with one kind of heuristic.
+ *
+ * New heuristics implement this interface, rather than adding a method to State (as the n-puzzle's
+ * do in NPuzzleHeuristic). The heuristics State already has are the constants of Numbered, and
+ * several admissible heuristics combine into one by taking their maximum, which is still admissible.
+ */
+public interface Heuristic {
+	/**
+	 * @param s a state
+	 * @return the estimated cost from the state to the goal
+	 */
+	int estimate(State s);
+
+	/**
+	 * Estimate several states in one call, such as the children of one node. The loop runs inside
+	 * the heuristic, so one virtual call (and one reading of the clock) serves all of them.
+	 * @param states the states
+	 * @param count the number of states to estimate, from the first
+	 * @param out receives the estimates, in the order of the states
+	 */
+	default void estimate(State[] states, int count, int[] out) {
+		for (int i = 0; i < count; i++) out[i] = estimate(states[i]);
+	}
+
+	/**
+	 * The heuristics of the State interface, named after their numbers.
+	 */
+	enum Numbered implements Heuristic {
+		H1 { public int estimate(State s) { return s.getH1(); } },
+		H2 { public int estimate(State s) { return s.getH2(); } },
+		H3 { public int estimate(State s) { return s.getH3(); } },
+		H4 { public int estimate(State s) { return s.getH4(); } };
+	}
+
+	/**
+	 * The largest estimate of several heuristics.
+	 */
+	final class Max implements Heuristic {
+		private final Heuristic[] parts;
+		/** The estimates of one part, per thread, as one Max may serve several searches at once */
+		private final ThreadLocal<int[]> scratch = new ThreadLocal<int[]>() {
+			protected int[] initialValue() {
+				return new int[4];
+			}
+		};
+
+		Max(Heuristic[] parts) {
+			this.parts = parts;
+		}
+
+		public int estimate(State s) {
+			int h = parts[0].estimate(s);
+			for (int i = 1; i < parts.length; i++) {
+				int p = parts[i].estimate(s);
+				if (p > h) h = p;
+			}
+			return h;
+		}
+
+		/**
+		 * Estimate the states by each part in turn, so each part runs its own loop.
+		 */
+		public void estimate(State[] states, int count, int[] out) {
+			parts[0].estimate(states, count, out);
+			int[] p = scratch.get();
+			if (p.length < count) {
+				p = new int[count];
+				scratch.set(p);
+			}
+			for (int i = 1; i < parts.length; i++) {
+				parts[i].estimate(states, count, p);
+				for (int j = 0; j < count; j++) {
+					if (p[j] > out[j]) out[j] = p[j];
+				}
+			}
+		}
+
+		/**
+		 * @return the parts as max(a,b,...), which parse reads back
+		 */
+		public String toString() {
+			StringBuilder b = new StringBuilder("max(");
+			for (int i = 0; i < parts.length; i++) b.append(i == 0 ? "" : ",").append(parts[i]);
+			return b.append(')').toString();
+		}
+	}
+
+	/**
+	 * @param number the number of a heuristic of the State interface, 1 to 4
+	 * @return the heuristic
+	 * @throws IllegalArgumentException if there is no heuristic of that number
+	 */
+	static Heuristic numbered(int number) {
+		Numbered[] all = Numbered.values();
+		if (number < 1 || number > all.length)
+			throw new IllegalArgumentException("Unknown heuristic " + number);
+		return all[number - 1];
+	}
+
+	/**
+	 * @param parts admissible heuristics
+	 * @return a heuristic estimating the largest of their estimates
+	 */
+	static Heuristic max(Heuristic... parts) {
+		if (parts.length == 0) throw new IllegalArgumentException("No heuristics to combine");
+		if (parts.length == 1) return parts[0];
+		return new Max(Arrays.copyOf(parts, parts.length));
+	}
+
+	/**
+	 * Read a heuristic of the State interface from a command line, as parse(spec, numbered) does.
+	 * @param spec the heuristic
+	 * @return the heuristic
+	 * @throws IllegalArgumentException if the spec is not understood
+	 */
+	static Heuristic parse(String spec) {
+		return parse(spec, Numbered.values());
+	}
+
+	/**
+	 * Read a heuristic from a command line: a number (e.g. "2" or "H2") or the maximum of several,
+	 * which may be maxima themselves, e.g. "max(2,4)" or "max(2,max(3,4))".
+	 * @param spec the heuristic
+	 * @param numbered the heuristics the numbers name, from 1 (their toString should be "H" and the number)
+	 * @return the heuristic
+	 * @throws IllegalArgumentException if the spec is not understood
+	 */
+	static Heuristic parse(String spec, Heuristic... numbered) {
+		String s = spec.trim();
+		if (s.regionMatches(true, 0, "max(", 0, 4) && s.endsWith(")")) {
+			// Split the arguments at the commas outside nested parentheses //
+			List<Heuristic> parts = new ArrayList<Heuristic>();
+			int depth = 0, from = 4;
+			for (int i = 4; i < s.length() - 1; i++) {
+				char c = s.charAt(i);
+				if (c == '(') depth++;
+				else if (c == ')' && --depth < 0) break;
+				else if (c == ',' && depth == 0) {
+					parts.add(parse(s.substring(from, i), numbered));
+					from = i + 1;
+				}
+			}
+			if (depth != 0)
+				throw new IllegalArgumentException("Unbalanced parentheses in heuristic " + spec);
+			parts.add(parse(s.substring(from, s.length() - 1), numbered));
+			return max(parts.toArray(new Heuristic[parts.size()]));
+		}
+		if (s.startsWith("H") || s.startsWith("h")) s = s.substring(1);
+		int number;
+		try {
+			number = Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Unknown heuristic " + spec);
+		}
+		if (number < 1 || number > numbered.length)
+			throw new IllegalArgumentException("Unknown heuristic " + spec);
+		return numbered[number - 1];
+	}
+}
@@ -0,0 +1,21 @@
+package search;
+
+/**
+ * A finite-state machine over actions that rejects action sequences leading to a state that
+ * another sequence, no longer and applicable whenever this one is, also reaches. A tree search such
+ * as IDA* runs the machine along its current path and skips every action the machine rejects, which
+ * removes most duplicate paths without a closed list.
+ */
+public interface MovePruner {
+	/**
+	 * @return the state of the machine at the root of the search
+	 */
+	int start();
+
+	/**
+	 * @param state the state of the machine before the action
+	 * @param action the action taken
+	 * @return the state of the machine after the action, or -1 if the action must be skipped
+	 */
+	int next(int state, Action action);
+}
@@ -0,0 +1,119 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks a state that has no apply and undo of its own in place, for searches that need a mutable
+ * state. Each apply takes the successor of the current state by the action and keeps the state it
+ * left on a stack, which undo goes back to, so the search allocates as the state's own successor
+ * function does; a state that is mutable itself should be searched directly. Searches in place
+ * try the actions of the initial state, so it should override State.actions to list every action
+ * of the problem, not only those legal in it.
+ */
+public final class MutableState implements State {
+	private State current;
+	/** The states left by apply, the last one on top */
+	private final List<State> path = new ArrayList<State>();
+
+	/**
+	 * @param initial the state to start at
+	 */
+	public MutableState(State initial) {
+		this.current = initial;
+	}
+
+	/**
+	 * @param s a state
+	 * @return the state if it is mutable, otherwise a MutableState starting at it
+	 */
+	public static State of(State s) {
+		return s.isMutable() ? s : new MutableState(s);
+	}
+
+	/**
+	 * @return the state this walk is at
+	 */
+	public State getCurrent() {
+		return current;
+	}
+
+	public boolean isMutable() {
+		return true;
+	}
+
+	public boolean apply(Action action) {
+		for (ActionStatePair p : current.successor()) {
+			if (p.getAction() == action) {
+				path.add(current);
+				current = p.getState();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @throws IllegalStateException if no action has been applied
+	 */
+	public void undo(Action action) {
+		if (path.isEmpty())
+			throw new IllegalStateException("Nothing to undo");
+		current = path.remove(path.size() - 1);
+	}
+
+	public boolean goal() {
+		return current.goal();
+	}
+
+	public ActionStatePair[] successor() {
+		return current.successor();
+	}
+
+	public ActionStatePair[] successor(Action last) {
+		return current.successor(last);
+	}
+
+	public MovePruner getMovePruner() {
+		return current.getMovePruner();
+	}
+
+	public Action[] actions() {
+		return current.actions();
+	}
+
+	public long key() {
+		return current.key();
+	}
+
+	public int incrementalH(Heuristic heuristic) {
+		return current.incrementalH(heuristic);
+	}
+
+	public double pathcost(Action action) {
+		return current.pathcost(action);
+	}
+
+	public int getH1() {
+		return current.getH1();
+	}
+
+	public int getH2() {
+		return current.getH2();
+	}
+
+	public int getH3() {
+		return current.getH3();
+	}
+
+	public int getH4() {
+		return current.getH4();
+	}
+
+	/**
+	 * @return the string form of the current state
+	 */
+	public String toString() {
+		return current.toString();
+	}
+}
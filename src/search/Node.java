@@ -1,9 +1,20 @@
 package search;
 
-import java.util.ArrayList;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
 //import java.util.ArrayList;
 
 import search.npuzzle.NPuzzleState;
@@ -20,11 +31,15 @@ import search.npuzzle.NPuzzleState;
  * To use ordering, use the Comparator class. 
  */
 public class Node {
+    /** The first int of an IDA* checkpoint file (3: a checkpoint may be taken within an iteration) */
+    private static final int IDA_CHECKPOINT = 0x49444133;	// "IDA3"
+    
     private final State  state;
     private final Node   parent;
     private final Action action;
     private final double cost;
     private final int    depth;
+    private int          h = -1;	// The heuristic value of the state, once estimated
 
     protected Node() {
         this(null, null, null, 0);
@@ -58,11 +73,12 @@ public class Node {
     /**
      * Expand the node into sub-nodes.
      * It uses the successor-function of the state to determine all Action/State pairs, and generates
-     * a node for each.
+     * a node for each. The successor that undoes the action that led here is left out, as it is the
+     * state of the parent node.
      * @return all nodes that can be reached from this node
      */
     public Node[] expand() {
-        ActionStatePair[] successors=state.successor();
+        ActionStatePair[] successors=state.successor(action);
         Node[] descendants=new Node[successors.length];
         for (int a=0; a<successors.length; a++) {
             Action action=successors[a].getAction();
@@ -122,49 +138,53 @@ public class Node {
     }
 
     /**
-     * Calculate the effective branching factor for a tree search.
-     * Adapted from ATILLA DEMIRAY's ANSI C CODE CALCULATING EFFECTIVE BRANCHING FACTOR
-     * http://utopia.poly.edu/~ademir02/soft/sources/aisx/ebfx.htm (was available 30 Aug 2005)
+     * Estimate the cost from this node to the goal. The value is kept on the node, so it is only
+     * computed once however often the search asks; a node is always asked with the same heuristic.
+     * @param heuristic the heuristic of the search
+     * @param stats receives the time spent
+     * @return the heuristic value of the state
+     */
+    public int estimate(Heuristic heuristic, SearchStats stats) {
+        if (h < 0) h = heuristic(state, heuristic, stats);
+        return h;
+    }
+
+    /**
+     * @return the heuristic value kept by estimate (or the distance an oracle knew), or -1 if the
+     * search did not estimate this node
+     */
+    public int getH() {
+        return h;
+    }
+
+    /**
+     * Calculate the effective branching factor for a tree search, i.e. the b that solves
+     * N+1 = 1+b+b^2+......+b^d. The polynomial is increasing and convex for b greater than 0, so
+     * Newton's method started to the right of the root, at (N+1)^(1/d), converges monotonically.
      * @param nNodes number of nodes
      * @param depth depth where solution was found
-     * @return the estimated effective branching factor
-     */
-    public static double effectiveBranchingFactor(int nNodes, int depth) {
-        double maxError=0.01; // the maximum error we accept from a solution 
-        double delta=0.01;    // how much we change our tested ebf each iteration   
-        int signOfError=0;    // the sign of the difference between N+1 and 1+b+b^2+......+b^d
-        double b=0;           // search for the optimum b will start from minimum possible b
-        while (true) {        // search for b starts here
-            // compute the expression 1+b+b^2+......+b^d
-            double sum=1;
-            for (int i=1; i<depth+1; i++) {
-                sum+=Math.pow(b, (double)i);
+     * @return the estimated effective branching factor (0 if depth is 0)
+     */
+    public static double effectiveBranchingFactor(long nNodes, int depth) {
+        if (depth<=0)
+            return 0;
+        double target=1+(double)nNodes;
+        double b=Math.pow(target, 1.0/depth);
+        for (int iteration=0; iteration<100; iteration++) {
+            // compute 1+b+b^2+......+b^d and its derivative by Horner's rule
+            double sum=1, slope=0;
+            for (int i=1; i<=depth; i++) {
+                slope=slope*b+sum;
+                sum=sum*b+1;
             }
-            // now the tricky bit, we compute the difference between 
-            // N+1 and 1+b+b^2+......+b^d, remember that we should have N+1=1+b+b^2+......+b^d
-            double error=sum-(1+(double)nNodes);
-            // save previous sign of error
-            int signOfPreviousError=signOfError;
-            // determine the new sign of error
-            if (error<0.0) // negative
-                signOfError=-1;
-            else // positive
-                signOfError=+1;
-            /* if the error calculated above is greater than the maximum acceptable error, then check if sign of error
-               was changed, if so that means loop missed the root that we are looking for, then decrease b by delta and 
-               decrease delta to catch root in next search if sign of error wasnt change then increase 'b' by delta
-               otherwise if error is smaller than the limit return the effective branch factor */
-            if (Math.abs(error)>maxError) { // error is big
-                if (signOfPreviousError==signOfError || signOfPreviousError==0) {  
-                    b+=delta;   // taking another step towards solution
-                } else {        // change of sign which means that we jumped over the minima
-                    b-=delta;   // go back
-                    delta/=2;   // take smaller steps
-                    signOfError=signOfPreviousError;  // undo change of sign
-                }
-            } else // error is small, let's return current estimate
-                return(b);
+            double next=b-(sum-target)/slope;
+            if (next<0)
+                next=0;
+            if (b-next<=1e-12*b)
+                return next;
+            b=next;
         }
+        return b;
     }
     
     /**
@@ -197,119 +217,822 @@ public class Node {
         return null;
     }
     
+    /**
+     * Evaluate a heuristic of a state, adding the time taken to the statistics when they sample the
+     * evaluation. All searches evaluate their heuristic here, so the call is inlined while one
+     * heuristic is in use.
+     * @param s the state to evaluate
+     * @param heuristic the heuristic
+     * @param stats receives the time spent
+     * @return the heuristic value
+     */
+    static int heuristic(State s, Heuristic heuristic, SearchStats stats) {
+    	if (!stats.timesHeuristic()) return heuristic.estimate(s);
+    	long start = System.nanoTime();
+    	int h = heuristic.estimate(s);
+    	stats.countHeuristicTime(System.nanoTime() - start);
+    	return h;
+    }
+    
+    /**
+     * The buffers one search passes the children of its expansions to the heuristic in. They grow
+     * to the largest expansion and are then reused, so estimating allocates nothing per node.
+     */
+    private static final class Batch {
+    	private State[] states = new State[4];
+    	private int[] h = new int[4];
+    	
+    	/**
+    	 * Estimate the nodes of one expansion that have no estimate yet, all in one call of the
+    	 * heuristic, adding the time taken to the statistics when they sample the call.
+    	 * @param nodes the nodes
+    	 * @param count the number of nodes to estimate, from the first
+    	 * @param heuristic the heuristic
+    	 * @param stats receives the time spent
+    	 */
+    	void estimate(Node[] nodes, int count, Heuristic heuristic, SearchStats stats) {
+    		if (count > states.length) {
+    			states = new State[count];
+    			h = new int[count];
+    		}
+    		int n = 0;
+    		for (int i = 0; i < count; i++) {
+    			if (nodes[i].h < 0) states[n++] = nodes[i].state;
+    		}
+    		if (n == 0) return;
+    		if (stats.timesHeuristic()) {
+    			long start = System.nanoTime();
+    			heuristic.estimate(states, n, h);
+    			stats.countHeuristicTime(System.nanoTime() - start);
+    		} else {
+    			heuristic.estimate(states, n, h);
+    		}
+    		n = 0;
+    		for (int i = 0; i < count; i++) {
+    			if (nodes[i].h < 0) nodes[i].h = h[n++];
+    		}
+    	}
+    }
+    
+    /**
+     * Record an expansion in the profile of the search, if it is profiled.
+     * @param node the node expanded
+     * @param heuristic the heuristic of the search
+     * @param stats the statistics of the search
+     */
+    private static void profile(Node node, Heuristic heuristic, SearchStats stats) {
+    	if (stats.profile != null) stats.profile.expanded((int) node.getCost() + node.estimate(heuristic, stats), node.getDepth());
+    }
+    
     /**
      * myHG searches the tree with the Greedy algorithm using heuristics.
      * @param initial initial state of the puzzle
      * @param heuristic integer value of the desired heuristic
-     * @return solution if one is found, null otherwise
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myHG(State initial, int heuristic, SearchStats stats) {
+		return myHG(initial, Heuristic.numbered(heuristic), stats);
+	}
+	
+	/**
+     * myHG searches the tree with the Greedy algorithm using a heuristic.
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
      */
-	public static Node myHG(State initial, int heuristic) {
-		List<State> repeated = new ArrayList<State>();
+	public static Node myHG(State initial, Heuristic heuristic, SearchStats stats) {
+		Set<State> repeated = new HashSet<State>();
 		State s = initial;
 		Node node = new Node(s);
-		MapQueue queue = new MapQueue();
+		BucketQueue queue = new BucketQueue();
+		Batch batch = new Batch();
 		
-		// Check if state is the goal state //
-		int n = 0;
-		while (!s.goal()) {			
-			// If not, expand children //
-			Node[] children = node.expand();
-			for( Node c : children) {
-				State cs = c.getState();
+		stats.start();
+		try {
+			// Check if state is the goal state //
+			while (!s.goal()) {			
+				// If not, expand children //
+				Node[] children = node.expand();
+				stats.expanded++;
+				profile(node, heuristic, stats);
+				int kept = 0;
+				for( Node c : children) {
+					State cs = c.getState();
 				
-				// Check repeated states //
-				boolean repeatedState = false;
-				for (int i = 0; i < repeated.size(); i++) {
-					if (!repeated.get(i).equals(cs)) continue;
-					
-					repeatedState = true;
-					break;
-				}
-				if (repeatedState) continue;
-				repeated.add(cs);
+					// Check repeated states //
+					if (!repeated.add(cs)) {
+						stats.duplicates++;
+						continue;
+					}
 				
-				// Increment number of nodes checked //
-				n++;
+					// Increment number of nodes checked //
+					if (stats.generate()) return null;
+					children[kept++] = c;
+				}
 				
-				// Evaluate specified heuristic //
-				int h = -1;
+				// Evaluate specified heuristic for all new children at once //
+				batch.estimate(children, kept, heuristic, stats);
 				
-				if (heuristic == 1) h = cs.getH1();
-				else if (heuristic == 2) h = cs.getH2();
-				else if (heuristic == 3) h = cs.getH3();
-				else if (heuristic == 4) h = cs.getH4();
+				// Add children to queue, deepest first among equal h //
+				for (int i = 0; i < kept; i++) queue.put(children[i].h, children[i].getDepth(), children[i]);
+				stats.sizes(queue.size(), repeated.size());
 				
-				// Add children to queue //
-				queue.put(h, c);
+				// Pick next closest node to goal + check for repeated states //
+				node = queue.getNext();
+				if (node == null) return null;	// No solution
+				s = node.getState();
 			}
 			
-			// Pick next closest node to goal + check for repeated states //
-			node = queue.getNext();
-			s = node.getState();
+			// Return goal state node //
+			stats.solved(node);
+			return node;
+		} finally {
+			stats.stop();
 		}
+	}
 		
-		System.out.println("H" + heuristic + " EBF [Greedy]\t" + effectiveBranchingFactor(n, node.getDepth()));
+	/**
+     * myHA searches the tree with the A* algorithm using heuristics.
+     * @param initial initial state of the puzzle
+     * @param heuristic integer value of the desired heuristic
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myHA(State initial, int heuristic, SearchStats stats) {
+		return myHA(initial, Heuristic.numbered(heuristic), stats, null, false);
+	}
+	
+	/**
+     * myHA searches the tree with the A* algorithm using a heuristic.
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic, admissible for an optimal solution
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myHA(State initial, Heuristic heuristic, SearchStats stats) {
+		return myHA(initial, heuristic, stats, null, false);
+	}
+	
+	/**
+     * myHA searches the tree with the A* algorithm, using the exact distances of an oracle where it
+     * knows them and the heuristic elsewhere.
+     * The numbered heuristics are admissible, so the oracle learns the solution.
+     * @param initial initial state of the puzzle
+     * @param heuristic integer value of the desired heuristic
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @param oracle the known distances, or null
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myHA(State initial, int heuristic, SearchStats stats, DistanceOracle oracle) {
+		return myHA(initial, Heuristic.numbered(heuristic), stats, oracle, true);
+	}
+	
+	/**
+     * myHA searches the tree with the A* algorithm, using the exact distances of an oracle where it
+     * knows them and the heuristic elsewhere. A node whose distance is known is finished by following
+     * the best actions of the oracle as soon as it is taken from the queue, as no cheaper path can be
+     * left then. If the oracle has lost part of that path (or gives a move that does not apply), the
+     * node is expanded as any other. An optimal solution is passed back to the oracle to learn from.
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic, admissible for an optimal solution
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @param oracle the known distances, or null
+     * @param optimal true if the heuristic is admissible, so the solution is optimal and the oracle
+     * may learn it; an oracle keeps what it learns as exact distances
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myHA(State initial, Heuristic heuristic, SearchStats stats, DistanceOracle oracle, boolean optimal) {
+		State s = initial;
+		Node node = new Node(s);
+		BucketQueue queue = new BucketQueue();
+		Map<State, Double> best = new HashMap<State, Double>();	// Cheapest known cost of every generated state
+		Batch batch = new Batch();
+		best.put(s, node.getCost());
+		int f = Integer.MAX_VALUE;	// The f value node was taken from the queue with
 		
-		// Return goal state node //
-		return node;
+		stats.start();
+		try {
+			// Check if state is the goal state //
+			while (!s.goal()) {			
+				// A known distance that fits the f value finishes the path optimally //
+				int known = oracle == null ? -1 : oracle.distance(s);
+				if (known >= 0 && node.getCost() + known <= f) {
+					Node goal = follow(node, oracle, known);
+					if (goal != null) {
+						node = goal;
+						break;
+					}
+				}
+				
+				// If not, expand children //
+				Node[] children = node.expand();
+				stats.expanded++;
+				profile(node, heuristic, stats);
+				int kept = 0;
+				for( Node c : children) {
+					State cs = c.getState();
+					double cost = c.getCost();	// Already includes the step from s
+				
+					// Check repeated states, reopening them when this path is cheaper //
+					Double seen = best.get(cs);
+					if (seen != null && seen <= cost) {
+						stats.duplicates++;
+						continue;
+					}
+					best.put(cs, cost);
+				
+					// Increment number of nodes checked //
+					if (stats.generate()) return null;
+				
+					// A known distance takes the place of the heuristic //
+					if (oracle != null) c.h = oracle.distance(cs);
+					children[kept++] = c;
+				}
+				
+				// Evaluate specified heuristic for all other new children at once //
+				batch.estimate(children, kept, heuristic, stats);
+				
+				// Add children to queue, deepest first among equal f //
+				for (int i = 0; i < kept; i++) {
+					Node c = children[i];
+					queue.put((int) (c.h + c.getCost()), (int) c.getCost(), c);
+				}
+				stats.sizes(queue.size(), best.size());
+				
+				// Pick next closest node to goal, skipping nodes superseded by a cheaper path //
+				do {
+					f = queue.minPriority();
+					node = queue.getNext();
+					if (node == null) return null;	// No solution
+				} while (node.getCost() > best.get(node.getState()));
+				s = node.getState();
+			}
+			
+			// Return goal state node //
+			stats.solved(node);
+			if (oracle != null && optimal) oracle.learn(node);
+			return node;
+		} finally {
+			stats.stop();
+		}
 	}
 	
 	/**
-     * myHA searches the tree with the A* algorithm using heuristics.
+	 * Extend a path to the goal by the best actions of an oracle. The oracle may have evicted the
+	 * later states of the path, or (for keys that are not unique) know another state under the same
+	 * key, so the path is given up when a move is missing, does not apply, or costs more than the
+	 * known distance.
+	 * @param node a node whose state has a known distance
+	 * @param oracle the known distances
+	 * @param known the distance the oracle knows for the state of the node
+	 * @return the goal node, or null if the oracle does not lead there
+	 */
+	private static Node follow(Node node, DistanceOracle oracle, int known) {
+		double limit = node.getCost() + known;
+		while (!node.getState().goal()) {
+			Action a = oracle.bestAction(node.getState());
+			if (a == null) return null;
+			Node next = null;
+			for (ActionStatePair p : node.getState().successor()) {
+				if (p.getAction() == a) next = new Node(p.getState(), node, a, node.getCost() + node.getState().pathcost(a));
+			}
+			if (next == null || next.getCost() > limit) return null;
+			node = next;
+		}
+		return node;
+	}
+
+	/**
+     * myWA searches the tree with weighted A*: nodes are taken in order of g + weight*h, which finds
+     * a solution with far fewer expansions than A*, at a cost of at most weight times the optimum.
      * @param initial initial state of the puzzle
      * @param heuristic integer value of the desired heuristic
-     * @return solution if one is found, null otherwise
+     * @param weight the weight of the heuristic, at least 1 (1 is A*)
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myWA(State initial, int heuristic, double weight, SearchStats stats) {
+		return myWA(initial, Heuristic.numbered(heuristic), weight, stats);
+	}
+	
+	/**
+     * myWA searches the tree with weighted A*, taking nodes in order of g + weight*h.
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic
+     * @param weight the weight of the heuristic, at least 1 (1 is A*)
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
      */
-	public static Node myHA(State initial, int heuristic) {
+	public static Node myWA(State initial, Heuristic heuristic, double weight, SearchStats stats) {
+		if (weight < 1)
+			throw new IllegalArgumentException("Weight below 1: " + weight);
 		State s = initial;
 		Node node = new Node(s);
-		MapQueue queue = new MapQueue();
-		List<State> repeated = new ArrayList<State>();	// Check repeated states for better EBF
+		BucketQueue queue = new BucketQueue();
+		Map<State, Double> best = new HashMap<State, Double>();	// Cheapest known cost of every generated state
+		Batch batch = new Batch();
+		best.put(s, node.getCost());
 		
-		// Check if state is the goal state //
-		int n = 0;
-		while (!s.goal()) {			
-			// If not, expand children //
-			Node[] children = node.expand();
-			for( Node c : children) {
-				State cs = c.getState();
+		stats.start();
+		try {
+			while (!s.goal()) {
+				Node[] children = node.expand();
+				stats.expanded++;
+				profile(node, heuristic, stats);
+				int kept = 0;
+				for( Node c : children) {
+					State cs = c.getState();
+					double cost = c.getCost();
 				
-				// Check repeated states //
-				boolean repeatedState = false;
-				for (int i = 0; i < repeated.size(); i++) {
-					if (!repeated.get(i).equals(cs)) continue;
-					
-					repeatedState = true;
-					break;
+					// Check repeated states, reopening them when this path is cheaper //
+					Double known = best.get(cs);
+					if (known != null && known <= cost) {
+						stats.duplicates++;
+						continue;
+					}
+					best.put(cs, cost);
+					if (stats.generate()) return null;
+					children[kept++] = c;
 				}
-				if (repeatedState) continue;
-				repeated.add(cs);
 				
-				// Increment number of nodes checked //
-				n++;
+				// Add children to queue by weighted f, deepest first among equals //
+				batch.estimate(children, kept, heuristic, stats);
+				for (int i = 0; i < kept; i++) {
+					Node c = children[i];
+					queue.put((int) (c.getCost() + weight * c.h), (int) c.getCost(), c);
+				}
+				stats.sizes(queue.size(), best.size());
 				
-				// Evaluate specified heuristic //
-				int h = -1;
+				do {
+					node = queue.getNext();
+					if (node == null) return null;	// No solution
+				} while (node.getCost() > best.get(node.getState()));
+				s = node.getState();
+			}
+			
+			stats.solved(node);
+			return node;
+		} finally {
+			stats.stop();
+		}
+	}
+	
+	/**
+     * myARA searches the tree with anytime repairing A*: a first solution is found with the initial
+     * weight, then the weight is lowered step by step, and every cheaper solution (or tighter bound)
+     * is passed to the listener until the solution is proven optimal or the time runs out.
+     * @param initial initial state of the puzzle
+     * @param heuristic integer value of the desired heuristic
+     * @param weight the weight of the first pass, at least 1
+     * @param step the amount the weight is lowered by after each pass
+     * @param millis the time allowed, or Long.MAX_VALUE to run until the solution is optimal
+     * @param listener receives each improved solution with its suboptimality bound, or null
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return the best solution found, or null if none was found in time (or if the node limit is reached)
+     */
+	public static AnytimeAStar.Solution myARA(State initial, int heuristic, double weight, double step, long millis,
+			AnytimeAStar.Listener listener, SearchStats stats) {
+		return myARA(initial, Heuristic.numbered(heuristic), weight, step, millis, listener, stats);
+	}
+	
+	/**
+     * myARA searches the tree with anytime repairing A* using a heuristic.
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic, admissible for the suboptimality bounds to hold
+     * @param weight the weight of the first pass, at least 1
+     * @param step the amount the weight is lowered by after each pass
+     * @param millis the time allowed, or Long.MAX_VALUE to run until the solution is optimal
+     * @param listener receives each improved solution with its suboptimality bound, or null
+     * @param stats receives the search statistics, and limits the number of generated nodes
+     * @return the best solution found, or null if none was found in time (or if the node limit is reached)
+     */
+	public static AnytimeAStar.Solution myARA(State initial, Heuristic heuristic, double weight, double step, long millis,
+			AnytimeAStar.Listener listener, SearchStats stats) {
+		return AnytimeAStar.search(initial, heuristic, weight, step, millis, listener, stats);
+	}
+	
+	/**
+     * myHDA searches the tree with hash-distributed parallel A*: every state is owned by one
+     * thread, which keeps it in its own open list and closed set, and generated nodes are sent to
+     * their owners in batches. The solution is optimal, as with myHA.
+     * @param initial initial state of the puzzle
+     * @param heuristic integer value of the desired heuristic
+     * @param threads the number of threads to search with, including the calling thread
+     * @param stats receives the search statistics (including the nodes expanded by each thread), and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myHDA(State initial, int heuristic, int threads, SearchStats stats) {
+		return myHDA(initial, Heuristic.numbered(heuristic), threads, stats);
+	}
+	
+	/**
+     * myHDA searches the tree with hash-distributed parallel A* using a heuristic, which the
+     * threads evaluate at the same time, so it must be thread-safe (as the numbered ones and Max are).
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic, admissible for an optimal solution
+     * @param threads the number of threads to search with, including the calling thread
+     * @param stats receives the search statistics (including the nodes expanded by each thread), and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myHDA(State initial, Heuristic heuristic, int threads, SearchStats stats) {
+		return ParallelAStar.search(initial, heuristic, threads, stats);
+	}
+	
+	/**
+     * myIDA searches the tree with the iterative-deepening A* algorithm using heuristics.
+     * Only the current path is kept in memory, so memory use is linear in the solution depth.
+     * Without a closed list, duplicate paths are cut by the move pruner of the state, if it has one.
+     * A mutable initial state is searched in place, and is back as it was when the search returns;
+     * heuristics the state keeps up to date itself (State.incrementalH) are read from it there.
+     * @param initial initial state of the puzzle
+     * @param heuristic integer value of the desired heuristic
+     * @param stats receives the search statistics (including every iteration), and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myIDA(State initial, int heuristic, SearchStats stats) {
+		return myIDA(initial, Heuristic.numbered(heuristic), stats);
+	}
+	
+	/**
+     * myIDA searches the tree with the iterative-deepening A* algorithm using a heuristic.
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic, admissible for an optimal solution
+     * @param stats receives the search statistics (including every iteration), and limits the number of generated nodes
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     */
+	public static Node myIDA(State initial, Heuristic heuristic, SearchStats stats) {
+		try {
+			return ida(initial, heuristic, -1, stats, null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);	// only checkpoints throw
+		}
+	}
+	
+	/**
+     * myIDA searches the tree with the iterative-deepening A* algorithm using heuristics, saving
+     * checkpoints whenever one is due: within an iteration the bound, the smallest f found over it
+     * so far and the path to the node about to be expanded, and between iterations the bound of the
+     * next one, each with the statistics. resumeIDA goes on from the last checkpoint.
+     * @param initial initial state of the puzzle
+     * @param heuristic integer value of the desired heuristic
+     * @param stats receives the search statistics (including every iteration), and limits the number of generated nodes
+     * @param checkpoints writes the checkpoints, or null for none
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     * @throws IOException if a checkpoint cannot be written
+     */
+	public static Node myIDA(State initial, int heuristic, SearchStats stats, CheckpointWriter checkpoints) throws IOException {
+		return myIDA(initial, Heuristic.numbered(heuristic), stats, checkpoints);
+	}
+	
+	/**
+     * myIDA searches the tree with the iterative-deepening A* algorithm using a heuristic, saving
+     * checkpoints as the int overload does. A checkpoint names the search by the string form of the
+     * initial state, which must show the whole state (as NPuzzleState's does), and by the spec of
+     * the heuristic (see Heuristic.parse).
+     * @param initial initial state of the puzzle
+     * @param heuristic the heuristic, admissible for an optimal solution
+     * @param stats receives the search statistics (including every iteration), and limits the number of generated nodes
+     * @param checkpoints writes the checkpoints, or null for none
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     * @throws IOException if a checkpoint cannot be written
+     */
+	public static Node myIDA(State initial, Heuristic heuristic, SearchStats stats, CheckpointWriter checkpoints) throws IOException {
+		return ida(initial, heuristic, -1, stats, checkpoints);
+	}
+	
+	/**
+     * Resume an IDA* search from a checkpoint written by myIDA, walking back down the saved path
+     * (without counting it again) and going on with the depth-first search from there.
+     * @param initial initial state of the puzzle, the same as the checkpointed search
+     * @param heuristic integer value of the desired heuristic, the same as the checkpointed search
+     * @param checkpoint the checkpoint file
+     * @param stats receives the search statistics, counted on from those in the checkpoint
+     * @param checkpoints writes further checkpoints, or null for none
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     * @throws IOException if the checkpoint cannot be read, or is for another search
+     */
+	public static Node resumeIDA(State initial, int heuristic, File checkpoint, SearchStats stats, CheckpointWriter checkpoints) throws IOException {
+		return resumeIDA(initial, Heuristic.numbered(heuristic), checkpoint, stats, checkpoints);
+	}
+	
+	/**
+     * Resume an IDA* search from a checkpoint written by myIDA.
+     * @param initial initial state of the puzzle, the same as the checkpointed search
+     * @param heuristic the heuristic, with the same spec as that of the checkpointed search
+     * @param checkpoint the checkpoint file
+     * @param stats receives the search statistics, counted on from those in the checkpoint
+     * @param checkpoints writes further checkpoints, or null for none
+     * @return solution if one is found, null otherwise (or if the node limit is reached)
+     * @throws IOException if the checkpoint cannot be read, or is for another board or heuristic
+     */
+	public static Node resumeIDA(State initial, Heuristic heuristic, File checkpoint, SearchStats stats, CheckpointWriter checkpoints) throws IOException {
+		IDASearch search = new IDASearch(initial, heuristic, stats, checkpoints);
+		int bound;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint)))) {
+			if (in.readInt() != IDA_CHECKPOINT)
+				throw new IOException(checkpoint + " is not an IDA* checkpoint of this version");
+			String spec = in.readUTF();
+			if (!spec.equals(heuristic.toString()))
+				throw new IOException(checkpoint + " is for heuristic " + spec + ", not " + heuristic);
+			if (!in.readUTF().equals(initial.toString()))
+				throw new IOException(checkpoint + " is for another initial state");
+			bound = in.readInt();
+			search.nextBound = in.readInt();
+			search.iterationStart = in.readLong();
+			search.resume = new int[in.readInt()];
+			for (int i = 0; i < search.resume.length; i++) search.resume[i] = in.readInt();
+			stats.readFrom(in);
+		}
+		return search.run(bound);
+	}
+	
+	/**
+	 * Run IDA* iterations from a bound until the goal is found.
+	 * @param bound the bound of the first iteration, or -1 for the estimate of the initial state
+	 */
+	private static Node ida(State initial, Heuristic heuristic, int bound, SearchStats stats, CheckpointWriter checkpoints) throws IOException {
+		return new IDASearch(initial, heuristic, stats, checkpoints).run(bound);
+	}
+	
+	/**
+	 * The state of one IDA* search, and of its current iteration.
+	 */
+	private static final class IDASearch {
+		/** The expansions between two checks whether a checkpoint is due */
+		private static final int CHECKPOINT_CHECK = 4096;
+		
+		private final State initial;
+		/** The string form of the initial state, which names the search in checkpoints (taken before the search moves it) */
+		private final String name;
+		private final Heuristic heuristic;
+		private final SearchStats stats;
+		/** Rejects duplicate move sequences, or null */
+		private final MovePruner pruner;
+		/** Writes checkpoints, or null */
+		private final CheckpointWriter checkpoints;
+		/** The f bound of the current iteration */
+		private int bound;
+		/** The smallest f over the bound found in the current iteration */
+		private int nextBound = Integer.MAX_VALUE;
+		/** The nodes expanded before the current iteration */
+		private long iterationStart;
+		/**
+		 * The index of the child searched at every depth of a checkpointed path, which the next
+		 * iteration walks back down before it goes on; null once it is there (or without a resume)
+		 */
+		private int[] resume;
+		/** The index of the child being searched at every depth of the current path */
+		private int[] tried = new int[64];
+		/** The actions of the current path, for the search in place */
+		private Action[] path = new Action[64];
+		/** The keys of the states on the current path, for the search in place */
+		private long[] keys = new long[64];
+		/** The actions tried at every node, for the search in place */
+		private Action[] actions;
+		/** Whether the state of the search in place keeps the heuristic up to date itself */
+		private boolean incremental;
+		
+		IDASearch(State initial, Heuristic heuristic, SearchStats stats, CheckpointWriter checkpoints) {
+			this.initial = initial;
+			this.name = initial.toString();
+			this.heuristic = heuristic;
+			this.stats = stats;
+			this.pruner = initial.getMovePruner();
+			this.checkpoints = checkpoints;
+		}
+		
+		/**
+		 * Run iterations until the goal is found, starting with a bound (and the path to resume, if any).
+		 * @param bound the bound of the first iteration, or -1 for the estimate of the initial state
+		 * @return the goal node, or null if there is none (or the node limit is reached)
+		 * @throws IOException if a checkpoint cannot be written
+		 */
+		Node run(int bound) throws IOException {
+			Node root = new Node(initial);
+			
+			stats.start();
+			try {
+				if (bound < 0) bound = root.estimate(heuristic, stats);
+				while (true) {
+					// Depth-first search up to the current f bound, or on from the resumed path //
+					this.bound = bound;
+					if (resume == null) {
+						nextBound = Integer.MAX_VALUE;
+						iterationStart = stats.expanded;
+					}
+					int start = pruner == null ? 0 : pruner.start();
+					Node goal = initial.isMutable() ? searchInPlace(root, start) : search(root, start);
+					resume = null;
+					stats.addIteration(bound, stats.expanded - iterationStart);
 				
-				if (heuristic == 1) h = cs.getH1();
-				else if (heuristic == 2) h = cs.getH2();
-				else if (heuristic == 3) h = cs.getH3();
-				else if (heuristic == 4) h = cs.getH4();
-				double cost = c.getCost() + s.pathcost(c.getAction());
+					if (goal != null) {
+						stats.solved(goal);
+						return goal;
+					}
+					if (stats.limitReached) return null;
+					if (nextBound == Integer.MAX_VALUE) return null;	// Nothing left beyond the bound
 				
-				// Add children to queue //
-				queue.put((int) (h + cost), c);
+					// Next iteration uses the smallest f that exceeded this bound //
+					bound = nextBound;
+					if (checkpoints != null && checkpoints.due()) {
+						this.bound = bound;
+						nextBound = Integer.MAX_VALUE;
+						iterationStart = stats.expanded;
+						checkpoint(0);
+					}
+				}
+			} finally {
+				stats.stop();
+				if (checkpoints != null) checkpoints.await();
 			}
+		}
+		
+		/**
+		 * Take a checkpoint at a node about to be expanded (or, at depth 0 between iterations, at
+		 * the start of the next one): the search, the iteration so far, the path and the statistics.
+		 * @param depth the depth of the node
+		 */
+		private void checkpoint(int depth) throws IOException {
+			ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(snapshot);
+			out.writeInt(IDA_CHECKPOINT);
+			out.writeUTF(heuristic.toString());
+			out.writeUTF(name);
+			out.writeInt(bound);
+			out.writeInt(nextBound);
+			out.writeLong(iterationStart);
+			out.writeInt(depth);
+			for (int i = 0; i < depth; i++) out.writeInt(tried[i]);
+			stats.writeTo(out);
+			final byte[] bytes = snapshot.toByteArray();
+			checkpoints.submit(new CheckpointWriter.Snapshot() {
+				public void write(DataOutputStream file) throws IOException {
+					file.write(bytes);
+				}
+			});
+		}
+		
+		/**
+		 * Start the expansion of a node: on the path being resumed, give the child to go on with,
+		 * as the node was counted before the checkpoint; otherwise take a checkpoint if one is due,
+		 * and count the node.
+		 * @param f the f value of the node
+		 * @param depth the depth of the node
+		 * @return the index of the first child to search, or -1 - that index if the node is on the
+		 * resumed path (its child there is not counted again)
+		 */
+		private int startExpansion(int f, int depth) throws IOException {
+			if (depth == tried.length) tried = Arrays.copyOf(tried, 2 * depth);
+			stats.sizes(depth + 1, 0);	// The path is all IDA* keeps
+			if (resume != null) {
+				if (depth < resume.length) return -1 - resume[depth];
+				resume = null;	// The checkpoint was taken here, before the node was expanded
+			} else if (checkpoints != null && (stats.expanded & (CHECKPOINT_CHECK - 1)) == 0 && checkpoints.due()) {
+				checkpoint(depth);
+			}
+			stats.expanded++;
+			if (stats.profile != null) stats.profile.expanded(f, depth);
+			return 0;
+		}
+		
+		/**
+		 * Depth-first search below the root on its one mutable state, which apply and undo move up
+		 * and down the tree, so no state or node is created until the goal is found. The state is
+		 * back at the root when the search returns.
+		 * @param root the node of the state to search from
+		 * @param machine the start state of the move pruner
+		 * @return the goal node if one is found within the bound, null otherwise
+		 */
+		Node searchInPlace(Node root, int machine) throws IOException {
+			if (actions == null) {
+				actions = root.getState().actions();
+				incremental = root.getState().incrementalH(heuristic) >= 0;
+			}
+			int depth = searchInPlace(root.getState(), root.getCost(), root.estimate(heuristic, stats), 0, machine);
+			if (depth < 0) return null;
 			
-			// Pick next closest node to goal //
-			node = queue.getNext();
-			s = node.getState();
+			// Replay the path to create the nodes of the solution //
+			Node node = root;
+			for (int i = 0; i < depth; i++) {
+				State s = node.getState();
+				for (ActionStatePair p : s.successor()) {
+					if (p.getAction() == path[i]) {
+						node = new Node(p.getState(), node, path[i], node.getCost() + s.pathcost(path[i]));
+						break;
+					}
+				}
+			}
+			return node;
+		}
+		
+		/**
+		 * Depth-first search below the current state, pruning states whose f value exceeds the bound.
+		 * Moves back to the parent are left to the move pruner; without one they are searched.
+		 * @param s the state, which is the same when this returns
+		 * @param g the cost of the path to the state
+		 * @param h the heuristic value of the state
+		 * @param depth the length of the path to the state
+		 * @param machine the state of the move pruner after the path to the state
+		 * @return the length of the path to the goal if one is found within the bound (the first
+		 * actions of path), -1 otherwise
+		 */
+		private int searchInPlace(State s, double g, int h, int depth, int machine) throws IOException {
+			int f = (int) g + h;
+			if (f > bound) {
+				if (f < nextBound) nextBound = f;
+				return -1;
+			}
+			if (s.goal()) return depth;
+			
+			int first = startExpansion(f, depth);
+			int resumed = first < 0 ? -1 - first : -1;	// The child on the resumed path, if any
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, 2 * depth);
+				keys = Arrays.copyOf(keys, 2 * depth);
+			}
+			keys[depth] = s.key();
+			for (int i = Math.max(first, resumed); i < actions.length; i++) {
+				Action a = actions[i];
+				// Skip moves that finish a sequence another sequence replaces //
+				int next = 0;
+				if (pruner != null) {
+					next = pruner.next(machine, a);
+					if (next < 0) {
+						if (expands(s, a, depth)) stats.duplicates++;
+						continue;
+					}
+				}
+				double cost = s.pathcost(a);
+				if (!s.apply(a)) continue;	// illegal here
+				if (i != resumed && stats.generate()) {
+					s.undo(a);
+					return -1;
+				}
+				
+				path[depth] = a;
+				tried[depth] = i;
+				int found = searchInPlace(s, g + cost, incremental ? s.incrementalH(heuristic) : heuristic(s, heuristic, stats), depth + 1, next);
+				s.undo(a);
+				if (found >= 0 || stats.limitReached) return found;
+			}
+			return -1;
 		}
 		
-		System.out.println("H" + heuristic + " EBF [A*]\t" + effectiveBranchingFactor(n, node.getDepth()));
+		/**
+		 * Check whether Node.expand would have made a child for an action, so moves the pruner
+		 * rejects are counted as duplicates only where search counts them: legal moves that do not
+		 * go straight back to the parent.
+		 * @param s the state, which is the same when this returns
+		 * @param a the action
+		 * @param depth the length of the path to the state
+		 * @return true if the action is legal and does not lead back to the parent
+		 */
+		private boolean expands(State s, Action a, int depth) {
+			if (!s.apply(a)) return false;
+			boolean back = depth > 0 && s.key() == keys[depth - 1];
+			s.undo(a);
+			return !back;
+		}
 		
-		// Return goal state node //
-		return node;
+		/**
+		 * Depth-first search below a node, pruning nodes whose f value exceeds the bound.
+		 * @param node the node to search from
+		 * @param machine the state of the move pruner after the path to the node
+		 * @return the goal node if one is found within the bound, null otherwise
+		 */
+		Node search(Node node, int machine) throws IOException {
+			State s = node.getState();
+			int f = (int) node.getCost() + node.estimate(heuristic, stats);
+			if (f > bound) {
+				if (f < nextBound) nextBound = f;
+				return null;
+			}
+			if (s.goal()) return node;
+			
+			int depth = node.getDepth();
+			int first = startExpansion(f, depth);
+			int resumed = first < 0 ? -1 - first : -1;	// The child on the resumed path, if any
+			Node[] children = node.expand();
+			for (int i = Math.max(first, resumed); i < children.length; i++) {
+				Node c = children[i];
+				// Skip moves that finish a sequence another sequence replaces //
+				int next = 0;
+				if (pruner != null) {
+					next = pruner.next(machine, c.getAction());
+					if (next < 0) {
+						stats.duplicates++;
+						continue;
+					}
+				}
+				if (i != resumed && stats.generate()) return null;
+				
+				tried[depth] = i;
+				Node goal = search(c, next);
+				if (goal != null || stats.limitReached) return goal;
+			}
+			return null;
+		}
 	}
-
 }
@@ -0,0 +1,239 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hash-distributed A* (HDA*). Every state is owned by one worker thread, chosen by hashing the
+ * state, and only its owner keeps it in an open list and closed set. A worker expands the best node
+ * of its own open list and sends every child to the owner of the child's state, so duplicate
+ * detection needs no shared table. Children are sent in batches through lock-free queues.
+ *
+ * Termination: a single counter holds the number of busy workers plus the number of batches sent
+ * but not yet added to an open list. A worker is idle when its open list has no node with an f
+ * below the cost of the best solution found so far; it then releases its share of the counter and
+ * takes it back before it accepts a new batch. Batches are counted before they are sent, so the
+ * counter only reaches 0 when no worker and no batch can produce a cheaper solution, which with an
+ * admissible heuristic makes the best solution found optimal.
+ */
+final class ParallelAStar {
+	/** The most nodes sent to another worker in one batch */
+	private static final int BATCH = 64;
+	/** Send all partly filled batches after this many expansions */
+	private static final int FLUSH_INTERVAL = 16;
+
+	private final Heuristic heuristic;
+	private final Worker[] workers;
+	/** Busy workers plus batches in flight; the search is over when it reaches 0 */
+	private final AtomicLong work;
+	/** Set when a worker reaches its node limit or fails */
+	private volatile boolean stop;
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	/** The cost of the best solution found so far */
+	private volatile int bestCost = Integer.MAX_VALUE;
+	private Node bestGoal;
+
+	private ParallelAStar(Heuristic heuristic, int threads, SearchStats total) {
+		this.heuristic = heuristic;
+		this.workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) workers[i] = new Worker(total.part(Math.max(1, total.getNodeLimit() / threads)));
+		this.work = new AtomicLong(threads);
+	}
+
+	/**
+	 * Search with A* on a number of threads.
+	 * @param initial initial state of the puzzle
+	 * @param heuristic the heuristic, admissible for an optimal solution; shared by all threads
+	 * @param threads the number of worker threads, including the calling thread
+	 * @param stats receives the search statistics (including the nodes expanded by each thread), and
+	 * limits the number of generated nodes, split evenly between the threads
+	 * @return solution if one is found, null otherwise (or if the node limit is reached)
+	 */
+	static Node search(State initial, Heuristic heuristic, int threads, SearchStats stats) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		ParallelAStar search = new ParallelAStar(heuristic, threads, stats);
+
+		stats.start();
+		try {
+			search.workers[search.owner(initial)].receive(new Node(initial));
+
+			Thread[] started = new Thread[threads - 1];
+			for (int i = 1; i < threads; i++) {
+				started[i - 1] = new Thread(search.workers[i], "hda-" + i);
+				started[i - 1].start();
+			}
+			search.workers[0].run();
+			for (Thread t : started) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					search.stop = true;
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			Throwable failed = search.failure.get();
+			if (failed instanceof RuntimeException) throw (RuntimeException) failed;
+			if (failed instanceof Error) throw (Error) failed;
+
+			long[] expanded = new long[threads];
+			for (int i = 0; i < threads; i++) {
+				stats.add(search.workers[i].stats);
+				expanded[i] = search.workers[i].stats.expanded;
+			}
+			stats.threads(expanded);
+			if (search.stop || search.bestGoal == null) return null;
+
+			stats.solved(search.bestGoal);
+			return search.bestGoal;
+		} finally {
+			stats.stop();
+		}
+	}
+
+	/**
+	 * @param s a state
+	 * @return the index of the worker that owns the state
+	 */
+	private int owner(State s) {
+		int h = s.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return (h & 0x7FFFFFFF) % workers.length;
+	}
+
+	private synchronized void solved(Node goal) {
+		if (goal.getCost() >= bestCost) return;
+		bestGoal = goal;
+		bestCost = (int) goal.getCost();
+	}
+
+	/**
+	 * One worker and the states it owns.
+	 */
+	private final class Worker implements Runnable {
+		final BucketQueue queue = new BucketQueue();
+		/** The cheapest known node of every state owned by this worker */
+		final Map<State, Node> best = new HashMap<State, Node>();
+		/** Batches sent to this worker */
+		final ConcurrentLinkedQueue<Node[]> inbox = new ConcurrentLinkedQueue<Node[]>();
+		/** The nodes waiting to be sent to each worker */
+		final List<List<Node>> outgoing = new ArrayList<List<Node>>();
+		final SearchStats stats;
+
+		Worker(SearchStats stats) {
+			this.stats = stats;
+		}
+
+		public void run() {
+			try {
+				work();
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+				stop = true;
+			}
+		}
+
+		private void work() {
+			for (int i = 0; i < workers.length; i++) outgoing.add(new ArrayList<Node>(BATCH));
+			int sinceFlush = 0;
+			while (!stop) {
+				Node[] batch;
+				while ((batch = inbox.poll()) != null) {
+					for (Node n : batch) receive(n);
+					work.decrementAndGet();
+				}
+
+				Node node = next();
+				if (node == null) {
+					// Idle: hand over everything, then wait for a batch or the end of the search //
+					flush();
+					work.decrementAndGet();
+					for (int spins = 0; inbox.isEmpty(); spins++) {
+						if (stop || work.get() == 0) return;
+						if (spins < 1000) Thread.onSpinWait();
+						else Thread.yield();
+					}
+					work.incrementAndGet();		// the batch is still counted, so work cannot have reached 0
+					continue;
+				}
+
+				stats.expanded++;
+				for (Node c : node.expand()) {
+					if (c.getCost() >= bestCost) continue;	// cannot lead to a cheaper solution
+					if (stats.generate()) {
+						stop = true;
+						return;
+					}
+					int owner = owner(c.getState());
+					if (workers[owner] == this) {
+						receive(c);
+						continue;
+					}
+					List<Node> out = outgoing.get(owner);
+					out.add(c);
+					if (out.size() >= BATCH) send(workers[owner], out);
+				}
+				stats.sizes(queue.size(), best.size());
+				if (++sinceFlush >= FLUSH_INTERVAL) {
+					flush();
+					sinceFlush = 0;
+				}
+			}
+		}
+
+		/**
+		 * Add a node of a state owned by this worker to its open list.
+		 * @param n the node
+		 */
+		void receive(Node n) {
+			State s = n.getState();
+			double cost = n.getCost();
+			if (cost >= bestCost) return;
+			Node known = best.get(s);
+			if (known != null && known.getCost() <= cost) {
+				stats.duplicates++;
+				return;
+			}
+			best.put(s, n);
+			if (s.goal()) {
+				solved(n);
+				return;
+			}
+			int h = Node.heuristic(s, heuristic, stats);
+			queue.put((int) (h + cost), (int) cost, n);
+		}
+
+		/**
+		 * @return the best node of the open list that could lead to a cheaper solution, or null if none
+		 */
+		private Node next() {
+			while (queue.minPriority() < bestCost) {
+				Node node = queue.getNext();
+				if (best.get(node.getState()) == node) return node;	// otherwise a cheaper path was found since
+			}
+			return null;
+		}
+
+		private void send(Worker to, List<Node> out) {
+			Node[] batch = out.toArray(new Node[out.size()]);
+			out.clear();
+			work.incrementAndGet();		// counted before it can be seen
+			to.inbox.add(batch);
+		}
+
+		private void flush() {
+			for (int i = 0; i < workers.length; i++) {
+				List<Node> out = outgoing.get(i);
+				if (!out.isEmpty()) send(workers[i], out);
+			}
+		}
+	}
+}
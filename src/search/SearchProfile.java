@@ -0,0 +1,324 @@
+package search;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A detailed record of one search, kept only when asked for: the nodes expanded at each f value
+ * (g + h, also for the searches that do not order by it) and at each depth, the size of the open
+ * list and closed set over the course of the search, and the error of heuristics 1 to 4 and of the
+ * search's own heuristic along the solution path.
+ *
+ * A search is profiled by giving its SearchStats a profile before it starts. Without one, the
+ * searches pay a null check per expanded node. The open list is sampled at every expansion while
+ * there is room for samples; when the room runs out every other sample is dropped and samples are
+ * taken half as often, so a long search keeps an even spread of at most a fixed number.
+ *
+ * The true distance of a state on the solution path is the cost of the rest of the path, which is
+ * only its optimal distance if the search found an optimal solution (A*, IDA* and arena A* with an
+ * admissible heuristic). Profiles are not saved in checkpoints; a resumed search profiles only the
+ * part after the resume.
+ */
+public class SearchProfile {
+	/** The heuristics of State whose error is measured along the solution path */
+	public static final int HEURISTICS = 4;
+	/** The most open list samples kept by default */
+	private static final int DEFAULT_SAMPLES = 4096;
+	/** The values of a sample: nodes expanded, nanoseconds, open list size, closed set size */
+	private static final int SAMPLE_FIELDS = 4;
+
+	private long[] byF = new long[64];
+	private long[] byDepth = new long[64];
+	private final long[] samples;
+	private int sampleCount;
+	/** Samples are taken every stride calls of sample, a power of two */
+	private long stride = 1;
+	private long calls;
+	/** Rows of depth, distance, h1 to h4 and the search's h (-1 if unknown), in the order recorded */
+	private final List<int[]> path = new ArrayList<int[]>();
+
+	/**
+	 * Create a profile keeping at most 4096 open list samples.
+	 */
+	public SearchProfile() {
+		this(DEFAULT_SAMPLES);
+	}
+
+	/**
+	 * Create a profile.
+	 * @param maxSamples the most open list samples kept, at least 2
+	 */
+	public SearchProfile(int maxSamples) {
+		if (maxSamples < 2)
+			throw new IllegalArgumentException("maxSamples must be at least 2: " + maxSamples);
+		this.samples = new long[maxSamples * SAMPLE_FIELDS];
+	}
+
+	/**
+	 * Record an expanded node.
+	 * @param f the cost of the path to the node plus its heuristic value
+	 * @param depth the length of the path to the node
+	 */
+	public void expanded(int f, int depth) {
+		if (f >= byF.length) byF = Arrays.copyOf(byF, Math.max(2 * byF.length, f + 1));
+		if (depth >= byDepth.length) byDepth = Arrays.copyOf(byDepth, Math.max(2 * byDepth.length, depth + 1));
+		if (f >= 0) byF[f]++;
+		byDepth[depth]++;
+	}
+
+	/**
+	 * Record the sizes of the open list and closed set, if a sample is due. Called by SearchStats.sizes.
+	 */
+	void sample(SearchStats stats, long open, long closed) {
+		if ((++calls & (stride - 1)) != 0) return;
+		if (sampleCount * SAMPLE_FIELDS == samples.length) {
+			// Full: keep every other sample and sample half as often //
+			for (int i = 1; 2 * i < sampleCount; i++) {
+				System.arraycopy(samples, 2 * i * SAMPLE_FIELDS, samples, i * SAMPLE_FIELDS, SAMPLE_FIELDS);
+			}
+			sampleCount = (sampleCount + 1) / 2;
+			stride *= 2;
+			if ((calls & (stride - 1)) != 0) return;
+		}
+		int i = sampleCount++ * SAMPLE_FIELDS;
+		samples[i] = stats.expanded;
+		samples[i + 1] = stats.getRunningNanos();
+		samples[i + 2] = open;
+		samples[i + 3] = closed;
+	}
+
+	/**
+	 * Record the states on the path to a goal, replacing those of any earlier solution. Called by
+	 * SearchStats.solved.
+	 * @param goal the goal node
+	 */
+	public void solution(Node goal) {
+		path.clear();
+		for (Node n = goal; n != null; n = n.getParent()) {
+			solutionStep(n.getDepth(), (int) (goal.getCost() - n.getCost()), n.getState(), n.getH());
+		}
+	}
+
+	/**
+	 * Record one state on the path to a goal, for searches that do not build Nodes. The states may
+	 * be given in any order; a new solution starts with a call of clearSolution.
+	 * @param depth the length of the path to the state
+	 * @param distance the cost of the rest of the path to the goal
+	 * @param s the state
+	 * @param h the value of the search's heuristic for the state, or -1 if unknown
+	 */
+	public void solutionStep(int depth, int distance, State s, int h) {
+		int[] row = new int[3 + HEURISTICS];
+		row[0] = depth;
+		row[1] = distance;
+		for (int i = 1; i <= HEURISTICS; i++) row[1 + i] = Heuristic.numbered(i).estimate(s);
+		row[2 + HEURISTICS] = h;
+		path.add(row);
+	}
+
+	/**
+	 * Forget the states of an earlier solution.
+	 */
+	public void clearSolution() {
+		path.clear();
+	}
+
+	/**
+	 * @return the nodes expanded at each f value, indexed by f
+	 */
+	public long[] getExpandedByF() {
+		return Arrays.copyOf(byF, used(byF));
+	}
+
+	/**
+	 * @return the nodes expanded at each depth, indexed by depth
+	 */
+	public long[] getExpandedByDepth() {
+		return Arrays.copyOf(byDepth, used(byDepth));
+	}
+
+	private static int used(long[] counts) {
+		int n = counts.length;
+		while (n > 0 && counts[n - 1] == 0) n--;
+		return n;
+	}
+
+	/**
+	 * @return the open list samples, oldest first, each the nodes expanded so far, the nanoseconds
+	 * since the start of the search, the size of the open list and the size of the closed set
+	 */
+	public long[][] getOpenSamples() {
+		long[][] s = new long[sampleCount][];
+		for (int i = 0; i < sampleCount; i++) s[i] = Arrays.copyOfRange(samples, i * SAMPLE_FIELDS, (i + 1) * SAMPLE_FIELDS);
+		return s;
+	}
+
+	/**
+	 * @return the number of states recorded on the solution path
+	 */
+	public int getPathLength() {
+		return path.size();
+	}
+
+	/**
+	 * @param heuristic 1 to 4 for a heuristic of State, 0 for the search's own
+	 * @return the mean of the distance minus the heuristic value over the states of the solution
+	 * path, or NaN if none has a value of that heuristic
+	 */
+	public double getMeanError(int heuristic) {
+		long sum = 0;
+		int n = 0;
+		for (int[] row : path) {
+			int h = value(row, heuristic);
+			if (h < 0) continue;
+			sum += row[1] - h;
+			n++;
+		}
+		return n == 0 ? Double.NaN : (double) sum / n;
+	}
+
+	/**
+	 * @param heuristic 1 to 4 for a heuristic of State, 0 for the search's own
+	 * @return the largest distance minus heuristic value on the solution path (negative if the
+	 * heuristic overestimates everywhere), or Integer.MIN_VALUE if none has a value
+	 */
+	public int getMaxError(int heuristic) {
+		int max = Integer.MIN_VALUE;
+		for (int[] row : path) {
+			int h = value(row, heuristic);
+			if (h >= 0 && row[1] - h > max) max = row[1] - h;
+		}
+		return max;
+	}
+
+	/**
+	 * @param heuristic 1 to 4 for a heuristic of State, 0 for the search's own
+	 * @return the number of states of the solution path whose heuristic value exceeds their distance
+	 */
+	public int getOverestimates(int heuristic) {
+		int n = 0;
+		for (int[] row : path) {
+			if (value(row, heuristic) > row[1]) n++;
+		}
+		return n;
+	}
+
+	private static int value(int[] row, int heuristic) {
+		if (heuristic < 0 || heuristic > HEURISTICS)
+			throw new IllegalArgumentException("Unknown heuristic " + heuristic);
+		return heuristic == 0 ? row[2 + HEURISTICS] : row[1 + heuristic];
+	}
+
+	private List<int[]> sortedPath() {
+		List<int[]> rows = new ArrayList<int[]>(path);
+		Collections.sort(rows, new Comparator<int[]>() {
+			public int compare(int[] a, int[] b) {
+				return Integer.compare(a[0], b[0]);
+			}
+		});
+		return rows;
+	}
+
+	/**
+	 * Write the profile as four CSV files with a header line each: prefix-f.csv (f, expanded),
+	 * prefix-depth.csv (depth, expanded), prefix-open.csv (expanded, millis, open, closed) and
+	 * prefix-path.csv (depth, distance, h1 to h4, search; search is empty where unknown).
+	 * @param directory the directory of the files, which is created if missing
+	 * @param prefix the start of the file names
+	 * @throws IOException if a file cannot be written
+	 */
+	public void writeCsv(File directory, String prefix) throws IOException {
+		directory.mkdirs();
+		try (Writer out = new FileWriter(new File(directory, prefix + "-f.csv"))) {
+			writeCounts(out, "f", byF);
+		}
+		try (Writer out = new FileWriter(new File(directory, prefix + "-depth.csv"))) {
+			writeCounts(out, "depth", byDepth);
+		}
+		try (Writer out = new FileWriter(new File(directory, prefix + "-open.csv"))) {
+			out.write("expanded,millis,open,closed\n");
+			for (int i = 0; i < sampleCount * SAMPLE_FIELDS; i += SAMPLE_FIELDS) {
+				out.write(samples[i] + "," + String.format(Locale.ROOT, "%.3f", samples[i + 1] / 1e6) + "," + samples[i + 2] + "," + samples[i + 3] + "\n");
+			}
+		}
+		try (Writer out = new FileWriter(new File(directory, prefix + "-path.csv"))) {
+			out.write("depth,distance");
+			for (int i = 1; i <= HEURISTICS; i++) out.write(",h" + i);
+			out.write(",search\n");
+			for (int[] row : sortedPath()) {
+				StringBuilder line = new StringBuilder();
+				for (int i = 0; i < row.length - 1; i++) line.append(i == 0 ? "" : ",").append(row[i]);
+				line.append(',').append(row[row.length - 1] < 0 ? "" : String.valueOf(row[row.length - 1]));
+				out.write(line.append('\n').toString());
+			}
+		}
+	}
+
+	private static void writeCounts(Writer out, String key, long[] counts) throws IOException {
+		out.write(key + ",expanded\n");
+		int n = used(counts);
+		for (int i = 0; i < n; i++) {
+			if (counts[i] != 0) out.write(i + "," + counts[i] + "\n");
+		}
+	}
+
+	/**
+	 * Write the profile as one JSON object: "expandedByF" and "expandedByDepth" (arrays indexed by
+	 * f and depth), "open" (samples as in writeCsv), "path" (rows as in writeCsv, search null where
+	 * unknown) and "error" (mean and max error and overestimates of each heuristic).
+	 * @param out receives the JSON
+	 * @throws IOException if it cannot be written
+	 */
+	public void writeJson(Writer out) throws IOException {
+		StringBuilder b = new StringBuilder("{\n  \"expandedByF\": ");
+		b.append(Arrays.toString(getExpandedByF()));
+		b.append(",\n  \"expandedByDepth\": ").append(Arrays.toString(getExpandedByDepth()));
+		b.append(",\n  \"open\": [");
+		for (int i = 0; i < sampleCount * SAMPLE_FIELDS; i += SAMPLE_FIELDS) {
+			b.append(i == 0 ? "\n    " : ",\n    ").append("{\"expanded\": ").append(samples[i])
+					.append(", \"millis\": ").append(String.format(Locale.ROOT, "%.3f", samples[i + 1] / 1e6))
+					.append(", \"open\": ").append(samples[i + 2]).append(", \"closed\": ").append(samples[i + 3]).append('}');
+		}
+		b.append("\n  ],\n  \"path\": [");
+		boolean first = true;
+		for (int[] row : sortedPath()) {
+			b.append(first ? "\n    " : ",\n    ").append("{\"depth\": ").append(row[0]).append(", \"distance\": ").append(row[1]);
+			for (int i = 1; i <= HEURISTICS; i++) b.append(", \"h").append(i).append("\": ").append(row[1 + i]);
+			int h = row[2 + HEURISTICS];
+			b.append(", \"search\": ").append(h < 0 ? "null" : String.valueOf(h)).append('}');
+			first = false;
+		}
+		b.append("\n  ],\n  \"error\": {");
+		for (int h = 0; h <= HEURISTICS; h++) {
+			double mean = getMeanError(h);
+			b.append(h == 0 ? "\n    " : ",\n    ").append(h == 0 ? "\"search\"" : "\"h" + h + "\"")
+					.append(": {\"mean\": ").append(Double.isNaN(mean) ? "null" : String.format(Locale.ROOT, "%.4f", mean))
+					.append(", \"max\": ").append(Double.isNaN(mean) ? "null" : String.valueOf(getMaxError(h)))
+					.append(", \"overestimates\": ").append(getOverestimates(h)).append('}');
+		}
+		b.append("\n  }\n}\n");
+		out.write(b.toString());
+	}
+
+	/**
+	 * @return the mean and max error of each heuristic along the solution path, on one tab-separated line
+	 */
+	public String toString() {
+		StringBuilder b = new StringBuilder("path ").append(path.size());
+		for (int h = 0; h <= HEURISTICS; h++) {
+			double mean = getMeanError(h);
+			if (Double.isNaN(mean)) continue;
+			b.append('\t').append(h == 0 ? "search" : "h" + h).append(" error ").append(String.format(Locale.ROOT, "%.2f", mean))
+					.append(" max ").append(getMaxError(h));
+		}
+		return b.toString();
+	}
+}
@@ -0,0 +1,407 @@
+package search;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Statistics collected by a search, and the node budget the search must stay within.
+ * Every search in Node fills in a SearchStats; the same object must not be shared by
+ * searches running at the same time. The public recording methods are for searches
+ * outside this package.
+ */
+public class SearchStats {
+	/** Unprofiled searches time one heuristic evaluation in this many, which stands for all of them */
+	static final int HEURISTIC_SAMPLE = 32;
+	/** The most nodes the search may generate before giving up */
+	private final long nodeLimit;
+	/** The number of nodes expanded */
+	long expanded;
+	/** The number of (non-repeated) nodes generated */
+	long generated;
+	/** The number of generated nodes dropped as repeated states */
+	long duplicates;
+	/** The largest number of nodes in the open list at any time */
+	long peakOpen;
+	/** The largest number of states in the closed set at any time */
+	long peakClosed;
+	/** The time spent evaluating heuristics, in nanoseconds (estimated from the timed evaluations) */
+	long heuristicTime;
+	/** The heuristic evaluations one timed evaluation stands for: 1 when profiled; set by setProfile */
+	int sample = HEURISTIC_SAMPLE;
+	/** The heuristic evaluations left until the next timed one */
+	private int untimed;
+	/** Set when the search gave up because it reached the node limit */
+	boolean limitReached;
+	/** The depth of the solution, or -1 if none was found */
+	private int solutionDepth = -1;
+	/** The cost of the solution, or -1 if none was found */
+	private double solutionCost = -1;
+	private long startTime;
+	private long elapsed;
+	/** The time spent by the search before it was resumed from a checkpoint, in nanoseconds */
+	private long resumedFrom;
+	/** The nodes expanded by each thread of a parallel search, or null */
+	private long[] threadExpanded;
+	/** The f bound and the nodes expanded of every IDA* iteration */
+	private final List<long[]> iterations = new ArrayList<long[]>();
+	/** The detailed record of the search, or null if it is not profiled */
+	SearchProfile profile;
+
+	/**
+	 * Create statistics for a search without a node limit.
+	 */
+	public SearchStats() {
+		this(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Create statistics for a search that gives up after generating a number of nodes.
+	 * @param nodeLimit the most nodes the search may generate
+	 */
+	public SearchStats(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Profile the search: record its expansions by f value and depth, its open list over time and
+	 * the heuristic error along its solution. The searches of Node (other than myHDA), AnytimeAStar
+	 * and ArenaAStar record all of it; the parallel and bidirectional searches only their solution.
+	 * @param profile the profile to fill in, or null to stop profiling
+	 */
+	public void setProfile(SearchProfile profile) {
+		this.profile = profile;
+		this.sample = profile != null ? 1 : HEURISTIC_SAMPLE;
+	}
+
+	/**
+	 * Reading the clock around every evaluation costs about as much as the cheap heuristics
+	 * themselves, so an unprofiled search times one evaluation (or batch of evaluations) in
+	 * HEURISTIC_SAMPLE and a profiled search every one. Call once per evaluation.
+	 * @return true if the search should time this evaluation and pass the time to countHeuristicTime
+	 */
+	public boolean timesHeuristic() {
+		if (--untimed > 0) return false;
+		untimed = sample;
+		return true;
+	}
+
+	/**
+	 * Create the statistics of a part of this search (e.g. one thread), to be added back with add.
+	 * @param nodeLimit the most nodes the part may generate
+	 * @return empty statistics that time heuristics as often as this search does
+	 */
+	SearchStats part(long nodeLimit) {
+		SearchStats part = new SearchStats(nodeLimit);
+		part.sample = sample;
+		return part;
+	}
+
+	/**
+	 * @return the profile of the search, or null if it is not profiled
+	 */
+	public SearchProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Mark the start of the search.
+	 */
+	public void start() {
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Mark the end of the search.
+	 */
+	public void stop() {
+		elapsed = resumedFrom + System.nanoTime() - startTime;
+	}
+
+	/**
+	 * @return the time since the start of the search, including the time before a resume, in nanoseconds
+	 */
+	public long getRunningNanos() {
+		return resumedFrom + System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Save the counts of a running search, for a checkpoint.
+	 * @param out the checkpoint
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeLong(expanded);
+		out.writeLong(generated);
+		out.writeLong(duplicates);
+		out.writeLong(peakOpen);
+		out.writeLong(peakClosed);
+		out.writeLong(heuristicTime);
+		out.writeLong(getRunningNanos());
+		out.writeInt(iterations.size());
+		for (long[] i : iterations) {
+			out.writeLong(i[0]);
+			out.writeLong(i[1]);
+		}
+	}
+
+	/**
+	 * Restore the counts saved by writeTo, so a resumed search goes on counting from them.
+	 * Call before start().
+	 * @param in the checkpoint
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	public void readFrom(DataInput in) throws IOException {
+		expanded = in.readLong();
+		generated = in.readLong();
+		duplicates = in.readLong();
+		peakOpen = in.readLong();
+		peakClosed = in.readLong();
+		heuristicTime = in.readLong();
+		resumedFrom = in.readLong();
+		iterations.clear();
+		for (int i = in.readInt(); i > 0; i--) iterations.add(new long[] { in.readLong(), in.readLong() });
+	}
+
+	/**
+	 * Count a generated node and check it against the node limit.
+	 * @return true if the search must give up
+	 */
+	public boolean generate() {
+		if (++generated <= nodeLimit) return false;
+		limitReached = true;
+		return true;
+	}
+
+	/**
+	 * Record the sizes of the open list and closed set, keeping the peaks.
+	 * @param open the current number of nodes in the open list
+	 * @param closed the current number of states in the closed set
+	 */
+	public void sizes(long open, long closed) {
+		if (open > peakOpen) peakOpen = open;
+		if (closed > peakClosed) peakClosed = closed;
+		if (profile != null) profile.sample(this, open, closed);
+	}
+
+	/**
+	 * Record the solution found by the search.
+	 * @param goal the goal node
+	 */
+	public void solved(Node goal) {
+		solutionDepth = goal.getDepth();
+		solutionCost = goal.getCost();
+		if (profile != null) profile.solution(goal);
+	}
+
+	/**
+	 * Record the solution found by a search that does not build Nodes.
+	 * @param depth the number of actions in the solution
+	 * @param cost the cost of the solution
+	 */
+	public void solved(int depth, double cost) {
+		solutionDepth = depth;
+		solutionCost = cost;
+	}
+
+	/**
+	 * Count an expanded node.
+	 */
+	public void countExpanded() {
+		expanded++;
+	}
+
+	/**
+	 * Count a generated node dropped as a repeated state.
+	 */
+	public void countDuplicate() {
+		duplicates++;
+	}
+
+	/**
+	 * Add the time of an evaluation that timesHeuristic chose, for it and the evaluations it stands for.
+	 * @param nanos the time in nanoseconds
+	 */
+	public void countHeuristicTime(long nanos) {
+		heuristicTime += nanos * sample;
+	}
+
+	/**
+	 * Record that the search gave up because it ran out of its node or memory budget.
+	 */
+	public void giveUp() {
+		limitReached = true;
+	}
+
+	/**
+	 * Add the counts of a part of the search that kept its own statistics (e.g. one direction of a
+	 * bidirectional search). Peak sizes are added, as the parts hold their nodes at the same time.
+	 * @param part the statistics of the part
+	 */
+	public void add(SearchStats part) {
+		expanded += part.expanded;
+		generated += part.generated;
+		duplicates += part.duplicates;
+		peakOpen += part.peakOpen;
+		peakClosed += part.peakClosed;
+		heuristicTime += part.heuristicTime;
+		limitReached |= part.limitReached;
+	}
+
+	/**
+	 * Record the nodes expanded by each thread of a parallel search.
+	 * @param expanded the nodes expanded, indexed by thread
+	 */
+	void threads(long[] expanded) {
+		threadExpanded = expanded.clone();
+	}
+
+	/**
+	 * @return the nodes expanded by each thread of a parallel search, or null if the search ran on one thread
+	 */
+	public long[] getThreadExpanded() {
+		return threadExpanded == null ? null : threadExpanded.clone();
+	}
+
+	/**
+	 * Record a finished IDA* iteration.
+	 * @param bound the f bound of the iteration
+	 * @param expandedInIteration the nodes expanded during the iteration
+	 */
+	void addIteration(int bound, long expandedInIteration) {
+		iterations.add(new long[] { bound, expandedInIteration });
+	}
+
+	/**
+	 * @return the number of IDA* iterations recorded
+	 */
+	public int getIterations() {
+		return iterations.size();
+	}
+
+	/**
+	 * @param i the iteration, counting from 0
+	 * @return the f bound of the iteration
+	 */
+	public int getIterationBound(int i) {
+		return (int) iterations.get(i)[0];
+	}
+
+	/**
+	 * @param i the iteration, counting from 0
+	 * @return the nodes expanded during the iteration
+	 */
+	public long getIterationExpanded(int i) {
+		return iterations.get(i)[1];
+	}
+
+	/**
+	 * @return the number of nodes expanded
+	 */
+	public long getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * @return the number of (non-repeated) nodes generated
+	 */
+	public long getGenerated() {
+		return generated;
+	}
+
+	/**
+	 * @return the number of generated nodes dropped as repeated states
+	 */
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	/**
+	 * @return the largest number of nodes in the open list at any time
+	 */
+	public long getPeakOpen() {
+		return peakOpen;
+	}
+
+	/**
+	 * @return the largest number of states in the closed set at any time
+	 */
+	public long getPeakClosed() {
+		return peakClosed;
+	}
+
+	/**
+	 * @return the most nodes the search may generate
+	 */
+	public long getNodeLimit() {
+		return nodeLimit;
+	}
+
+	/**
+	 * @return true if the search gave up because it reached the node limit
+	 */
+	public boolean isLimitReached() {
+		return limitReached;
+	}
+
+	/**
+	 * @return the depth of the solution, or -1 if none was found
+	 */
+	public int getSolutionDepth() {
+		return solutionDepth;
+	}
+
+	/**
+	 * @return the cost of the solution, or -1 if none was found
+	 */
+	public double getSolutionCost() {
+		return solutionCost;
+	}
+
+	/**
+	 * @return the wall-clock time of the search in milliseconds
+	 */
+	public long getMillis() {
+		return elapsed / 1000000;
+	}
+
+	/**
+	 * @return the wall-clock time of the search in nanoseconds
+	 */
+	public long getNanos() {
+		return elapsed;
+	}
+
+	/**
+	 * @return the time spent evaluating heuristics in nanoseconds, measured in profiled searches and
+	 * estimated from a sample of the evaluations in others (see timesHeuristic)
+	 */
+	public long getHeuristicNanos() {
+		return heuristicTime;
+	}
+
+	/**
+	 * @return the effective branching factor of the search, or 0 if no solution was found
+	 */
+	public double getEffectiveBranchingFactor() {
+		if (solutionDepth < 0) return 0;
+		return Node.effectiveBranchingFactor(generated, solutionDepth);
+	}
+
+	/**
+	 * @return the statistics on one tab-separated line
+	 */
+	public String toString() {
+		return "depth " + solutionDepth + "\tcost " + solutionCost
+				+ "\tgenerated " + generated + "\texpanded " + expanded + "\tduplicates " + duplicates
+				+ "\tpeak open " + peakOpen + "\tpeak closed " + peakClosed
+				+ "\ttime " + getMillis() + "ms" + "\theuristic " + heuristicTime / 1000000 + "ms"
+				+ "\tEBF " + String.format(Locale.ROOT, "%.4f", getEffectiveBranchingFactor())
+				+ (threadExpanded != null ? "\tthreads " + Arrays.toString(threadExpanded) : "")
+				+ (limitReached ? "\tnode limit reached" : "");
+	}
+}
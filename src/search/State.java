@@ -23,6 +23,83 @@ public interface State {
      */
     public ActionStatePair[] successor();
     
+    /**
+     * Generates the successors of this state, leaving out the one that undoes the action that led here.
+     * That successor is always a repeated state, so graph and tree searches can skip it.
+     * The default returns all successors.
+     * @param last the action that led to this state, or null at the root
+     * @return an array of successor <action, state> pairs
+     */
+    default ActionStatePair[] successor(Action last) {
+        return successor();
+    }
+    
+    /**
+     * @return a machine that rejects duplicate action sequences from any state of this problem, for
+     * use in tree searches, or null if there is none
+     */
+    default MovePruner getMovePruner() {
+        return null;
+    }
+    
+    /**
+     * @return true if apply and undo change this state in place, so a depth-first search can walk
+     * the tree on this one state instead of creating a state per node
+     */
+    default boolean isMutable() {
+        return false;
+    }
+    
+    /**
+     * @return every action that can be legal in some state of this problem, for searches that
+     * apply actions in place (apply rejects the ones that are not legal in the current state)
+     */
+    default Action[] actions() {
+        ActionStatePair[] successors = successor();
+        Action[] actions = new Action[successors.length];
+        for (int a = 0; a < successors.length; a++) actions[a] = successors[a].getAction();
+        return actions;
+    }
+    
+    /**
+     * Take an action, changing this state into its successor. Only supported by mutable states;
+     * MutableState.of walks any other state in place by its successors.
+     * @param action the action to take
+     * @return true if the action was taken, false (and the state is unchanged) if it is not legal here
+     * @throws UnsupportedOperationException if the state is not mutable
+     */
+    default boolean apply(Action action) {
+        throw new UnsupportedOperationException(getClass().getName() + " is not mutable");
+    }
+    
+    /**
+     * Undo the last action taken by apply, changing this state back into its predecessor.
+     * @param action the action to undo
+     * @throws UnsupportedOperationException if the state is not mutable
+     */
+    default void undo(Action action) {
+        throw new UnsupportedOperationException(getClass().getName() + " is not mutable");
+    }
+    
+    /**
+     * Read a heuristic that this state keeps up to date as apply and undo change it, so a search
+     * in place pays nothing to evaluate it. The default keeps none.
+     * @param heuristic a heuristic
+     * @return the value of the heuristic for this state, or -1 if this state does not keep it
+     */
+    default int incrementalH(Heuristic heuristic) {
+        return -1;
+    }
+    
+    /**
+     * A key of the state as a primitive, so searches can keep states in tables of longs. Equal
+     * states have equal keys. The default widens the hash code, which different states may share.
+     * @return the key of the state
+     */
+    default long key() {
+        return hashCode();
+    }
+    
     /**
      * Determines the cost for taking the specified action when in this state. 
      * @param action the action that takes us from this state, must be a legal action
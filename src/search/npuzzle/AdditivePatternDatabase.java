@@ -0,0 +1,157 @@
+package search.npuzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A set of disjoint pattern databases whose values are added, e.g. 7-8 for the 15-puzzle
+ * and 6-6-6-6 for the 24-puzzle.
+ * The databases are kept in the directory named by the system property "npuzzle.pdb.dir"
+ * (default "pdb"); a database that is not found there is built and saved on first use.
+ *
+ * Building is expensive for the larger patterns: the 8-tile group of the 15-puzzle has 16!/8!
+ * entries, so its search needs a 519 MB table, 260 MB more to pack it and a queue of up to a few
+ * hundred MB (see PatternDatabase.build). The groups are built one at a time, each only after
+ * checking the heap, so run the first search with -Xmx2g or more, or copy the files in.
+ */
+public final class AdditivePatternDatabase {
+	/** The largest number of entries of one database in the default partition */
+	private static final long MAX_ENTRIES = 1L << 29;
+	/** The largest number of tiles in one pattern of the default partition */
+	private static final int MAX_TILES = 8;
+
+	private static final AdditivePatternDatabase[] defaults = new AdditivePatternDatabase[BoardTables.MAX_SIZE + 1];
+
+	/** The side length of the board */
+	private final int squareSize;
+	/** The disjoint pattern databases */
+	private final PatternDatabase[] patterns;
+	/** The number of tiles in the largest pattern */
+	private final int maxPattern;
+	/** The scratch space of estimate, per thread, as the databases are shared by all searches */
+	private final ThreadLocal<int[][]> scratch = new ThreadLocal<int[][]>() {
+		protected int[][] initialValue() {
+			int cells = squareSize * squareSize;
+			return new int[][] { new int[cells], new int[maxPattern], new int[Math.max(2 * maxPattern, cells)] };
+		}
+	};
+
+	/**
+	 * Create an additive heuristic from disjoint pattern databases of the same board size.
+	 * @param squareSize the side length of the board
+	 * @param patterns the pattern databases, whose tiles must not overlap
+	 */
+	public AdditivePatternDatabase(int squareSize, PatternDatabase... patterns) {
+		boolean[] seen = new boolean[squareSize * squareSize];
+		int max = 0;
+		for (PatternDatabase p : patterns) {
+			max = Math.max(max, p.getPatternSize());
+			for (int t : p.getTiles()) {
+				if (seen[t]) throw new IllegalArgumentException("Tile " + t + " is in more than one pattern");
+				seen[t] = true;
+			}
+		}
+		this.squareSize = squareSize;
+		this.patterns = patterns.clone();
+		this.maxPattern = max;
+	}
+
+	/**
+	 * Split the tiles 1..n into groups of consecutive tiles, as even as possible with the
+	 * larger groups last, using the fewest groups whose databases stay within MAX_ENTRIES.
+	 * @param squareSize the side length of the board
+	 * @return the tiles of each pattern
+	 */
+	static int[][] defaultPartition(int squareSize) {
+		int cells = squareSize * squareSize, n = cells - 1;
+		int k = 1;
+		while (k < MAX_TILES && k < n && PatternDatabase.size(cells, k + 1) <= MAX_ENTRIES) k++;
+
+		int groups = (n + k - 1) / k;
+		int[][] partition = new int[groups][];
+		int tile = 1;
+		for (int g = 0; g < groups; g++) {
+			int size = n / groups + (g >= groups - n % groups ? 1 : 0);
+			partition[g] = new int[size];
+			for (int i = 0; i < size; i++) partition[g][i] = tile++;
+		}
+		return partition;
+	}
+
+	/**
+	 * Load (or build and save) the default additive pattern databases for a board size.
+	 * @param squareSize the side length of the board
+	 * @return the shared pattern databases of that size
+	 * @throws UncheckedIOException if a database cannot be read or written
+	 */
+	public static AdditivePatternDatabase forSize(int squareSize) {
+		synchronized (defaults) {
+			AdditivePatternDatabase pdb = defaults[squareSize];
+			if (pdb == null) {
+				File dir = new File(System.getProperty("npuzzle.pdb.dir", "pdb"));
+				int[][] partition = defaultPartition(squareSize);
+				PatternDatabase[] patterns = new PatternDatabase[partition.length];
+				try {
+					for (int i = 0; i < partition.length; i++) {
+						patterns[i] = loadOrBuild(dir, squareSize, partition[i]);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				pdb = new AdditivePatternDatabase(squareSize, patterns);
+				defaults[squareSize] = pdb;
+			}
+			return pdb;
+		}
+	}
+
+	/**
+	 * Load a pattern database from a directory, building and saving it first if it is missing or
+	 * was written by an older version.
+	 * @param dir the directory holding the databases
+	 * @param squareSize the side length of the board
+	 * @param tiles the tiles of the pattern
+	 * @return the memory-mapped pattern database
+	 * @throws IOException if the database cannot be read or written
+	 */
+	public static PatternDatabase loadOrBuild(File dir, int squareSize, int[] tiles) throws IOException {
+		StringBuilder name = new StringBuilder("pdb-" + squareSize + "x" + squareSize + "-");
+		for (int i = 0; i < tiles.length; i++) {
+			if (i > 0) name.append('_');
+			name.append(tiles[i]);
+		}
+		File file = new File(dir, name.append(".dat").toString());
+
+		if (!file.exists() || !PatternDatabase.isCurrent(file)) {
+			if (!dir.isDirectory() && !dir.mkdirs())
+				throw new IOException("Cannot create directory " + dir);
+			PatternDatabase.build(squareSize, tiles).save(file);
+		}
+		return PatternDatabase.load(file);
+	}
+
+	/**
+	 * @return the side length of the board
+	 */
+	public int getSquareSize() {
+		return squareSize;
+	}
+
+	/**
+	 * Sum the values of all patterns for a board.
+	 * @param state the board, of the same size as the databases
+	 * @return an admissible estimate of the number of moves to the goal
+	 */
+	public int estimate(NPuzzleState state) {
+		int[][] s = scratch.get();
+		int[] where = s[0];
+		for (int i = 0; i < where.length; i++) where[state.tile(i)] = i;
+
+		int h = 0;
+		for (PatternDatabase p : patterns) {
+			h += p.lookup(where, s[1], s[2]);
+		}
+		return h;
+	}
+}
@@ -0,0 +1,305 @@
+package search.npuzzle;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import search.Action;
+import search.CheckpointWriter;
+import search.Heuristic;
+import search.SearchProfile;
+import search.SearchStats;
+
+/**
+ * A* for boards up to 4x4 that keeps its nodes in a NodeArena instead of Node objects.
+ * The closed set maps packed boards to node indices in a primitive hash map and the open list holds
+ * node indices, so the whole search fits in memory allocated up front: when the arena or the map is
+ * full the search gives up instead of running the JVM out of heap. It explores the same nodes as
+ * Node.myHA and finds solutions of the same (optimal) length.
+ *
+ * With a CheckpointWriter the search saves its nodes, open list and statistics every so often, and
+ * resume goes on from the last checkpoint after a restart, exploring exactly what the search would have.
+ */
+public final class ArenaAStar {
+	/** The bytes of the open list per node, on average */
+	private static final int QUEUE_BYTES_PER_NODE = 4;
+	/** The first int of a checkpoint file */
+	private static final int CHECKPOINT = 0x41415331;	// "AAS1"
+	/** The expansions between two checks whether a checkpoint is due */
+	private static final int CHECKPOINT_CHECK = 4096;
+
+	private final int squareSize;
+	/** The number of the heuristic, which identifies it in checkpoints */
+	private final int heuristic;
+	private final Heuristic estimator;
+	/** The packed goal board */
+	private final long goal;
+	private final NodeArena arena;
+	private final LongIntMap closed;
+	private final IntBucketQueue open = new IntBucketQueue();
+	/** Scratch boards, so expanding a node allocates nothing */
+	private final NPuzzleState parent, child;
+	/** Writes checkpoints, or null */
+	private CheckpointWriter checkpoints;
+	/** The nodes already in the node file of the checkpoints */
+	private int written;
+
+	/**
+	 * Create a search that can be run for many instances of one size.
+	 * @param squareSize the size of the boards (at most 4)
+	 * @param heuristic integer value of the desired heuristic
+	 * @param arena the store for the nodes; its capacity bounds the search
+	 */
+	public ArenaAStar(int squareSize, int heuristic, NodeArena arena) {
+		if (squareSize > BoardTables.PACKED_MAX_SIZE)
+			throw new IllegalArgumentException("Arena search supports boards up to " + BoardTables.PACKED_MAX_SIZE + "x" + BoardTables.PACKED_MAX_SIZE);
+		this.squareSize = squareSize;
+		this.heuristic = heuristic;
+		this.estimator = NPuzzleHeuristic.numbered(heuristic);
+		this.goal = BoardTables.forSize(squareSize).goalPacked;
+		this.arena = arena;
+		this.closed = new LongIntMap(arena.capacity());
+		this.parent = new NPuzzleState(squareSize);
+		this.child = new NPuzzleState(squareSize);
+	}
+
+	/**
+	 * Create a search whose arena, closed set and open list together take about a given amount of memory.
+	 * @param squareSize the size of the boards (at most 4)
+	 * @param heuristic integer value of the desired heuristic
+	 * @param bytes the memory budget
+	 * @param direct true to keep the arena outside the Java heap
+	 * @return the search
+	 */
+	public static ArenaAStar withBudget(int squareSize, int heuristic, long bytes, boolean direct) {
+		long perNode = NodeArena.BYTES_PER_NODE + LongIntMap.BYTES_PER_ENTRY + QUEUE_BYTES_PER_NODE;
+		long capacity = Math.min(bytes / perNode, 1 << 29);
+		return new ArenaAStar(squareSize, heuristic, new NodeArena((int) Math.max(1, capacity), direct));
+	}
+
+	/**
+	 * @return the arena holding the nodes of the last search
+	 */
+	public NodeArena getArena() {
+		return arena;
+	}
+
+	/**
+	 * Search from an initial state with A*.
+	 * @param initial initial state of the puzzle
+	 * @param stats receives the search statistics, and limits the number of generated nodes
+	 * @return the index of the goal node in the arena, or -1 if no solution was found (or the node limit
+	 * or the arena was reached)
+	 * @throws UncheckedIOException if a checkpoint cannot be written
+	 */
+	public int search(NPuzzleState initial, SearchStats stats) {
+		if (initial.squareSize != squareSize)
+			throw new IllegalArgumentException("Board of size " + initial.squareSize + ", expected " + squareSize);
+		arena.clear();
+		closed.clear();
+		open.clear();
+		written = 0;
+
+		stats.start();
+		parent.load(initial.packed());
+		int root = arena.add(parent.packed(), parent.blank(), NodeArena.NO_PARENT, 0, 0, heuristic(parent, stats));
+		closed.put(parent.packed(), root);
+		open.put(arena.h(root), 0, root);
+		return run(stats);
+	}
+
+	/**
+	 * Go on with a search from a checkpoint: its nodes, closed set, open list and statistics.
+	 * The arena must be able to hold the nodes of the checkpoint.
+	 * @param checkpoint a checkpoint written while this search (or one of the same size and heuristic) ran
+	 * @param stats receives the search statistics, counted on from those in the checkpoint
+	 * @return the index of the goal node in the arena, or -1 if no solution was found (or the node limit
+	 * or the arena was reached)
+	 * @throws IOException if the checkpoint cannot be read, or is for another search
+	 */
+	public int resume(File checkpoint, SearchStats stats) throws IOException {
+		int[] entries;
+		int nodes;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint)))) {
+			if (in.readInt() != CHECKPOINT)
+				throw new IOException(checkpoint + " is not an arena A* checkpoint");
+			if (in.readInt() != squareSize || in.readInt() != heuristic)
+				throw new IOException(checkpoint + " is for another board size or heuristic");
+			nodes = in.readInt();
+			stats.readFrom(in);
+			entries = new int[in.readInt()];
+			for (int i = 0; i < entries.length; i++) entries[i] = in.readInt();
+		}
+		closed.clear();
+		open.clear();
+		try (FileChannel ch = FileChannel.open(nodeFile(checkpoint).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			arena.read(ch, nodes);
+			ch.truncate((long) nodes * NodeArena.BYTES_PER_NODE);	// drop nodes written after the checkpoint
+		}
+		// Further checkpoints to the same file only append nodes; a new file needs all of them //
+		boolean sameFile = checkpoints != null && nodeFile(checkpoints.getFile()).getAbsoluteFile().equals(nodeFile(checkpoint).getAbsoluteFile());
+		written = sameFile ? nodes : 0;
+
+		// The closed set maps every board to its cheapest node //
+		for (int i = 0; i < nodes; i++) {
+			int known = closed.get(arena.board(i));
+			if ((known < 0 || arena.g(i) < arena.g(known)) && !closed.put(arena.board(i), i))
+				throw new IOException("The closed set of " + checkpoint + " does not fit");
+		}
+		for (int i : entries) open.put(arena.g(i) + arena.h(i), arena.g(i), i);
+
+		stats.start();
+		return run(stats);
+	}
+
+	/**
+	 * Write checkpoints of every search from now on, so it can be resumed after the JVM is gone.
+	 * The nodes are appended to a file next to the checkpoint (its name plus ".nodes"), so each
+	 * checkpoint only writes the nodes added since the last one.
+	 * @param checkpoints the writer, or null to stop writing checkpoints
+	 */
+	public void setCheckpoints(CheckpointWriter checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
+	private static File nodeFile(File checkpoint) {
+		return new File(checkpoint.getPath() + ".nodes");
+	}
+
+	/**
+	 * Expand nodes from the open list until the goal is found.
+	 */
+	private int run(SearchStats stats) {
+		SearchProfile profile = stats.getProfile();
+		try {
+			int node;
+			while ((node = open.poll()) >= 0) {
+				long board = arena.board(node);
+				if (closed.get(board) != node) continue;	// a cheaper path was found since
+				if (board == goal) {
+					stats.solved(arena.g(node), arena.g(node));
+					if (profile != null) profile(node, profile);
+					return node;
+				}
+
+				// Expand, skipping the move that undoes the last one //
+				stats.countExpanded();
+				if (profile != null) profile.expanded(arena.g(node) + arena.h(node), arena.g(node));
+				parent.load(board);
+				int g = arena.g(node) + 1;
+				int back = arena.parent(node) == NodeArena.NO_PARENT ? -1 : arena.blank(arena.parent(node));
+				for (int a = 0; a < NodeArena.ACTIONS.length; a++) {
+					int from = parent.target(NodeArena.ACTIONS[a]);
+					if (from < 0 || from == back) continue;
+					child.copyFrom(parent);
+					child.slide(from);
+
+					long cb = child.packed();
+					int known = closed.get(cb);
+					if (known >= 0 && arena.g(known) <= g) {
+						stats.countDuplicate();
+						continue;
+					}
+					if (stats.generate()) return -1;
+
+					int h = heuristic(child, stats);
+					int c = arena.add(cb, child.blank(), node, a, g, h);
+					if (c < 0 || !closed.put(cb, c)) {
+						stats.giveUp();		// out of memory budget
+						return -1;
+					}
+					open.put(g + h, g, c);
+				}
+				stats.sizes(open.size(), closed.size());
+				if (checkpoints != null && (stats.getExpanded() & (CHECKPOINT_CHECK - 1)) == 0 && checkpoints.due()) checkpoint(stats);
+			}
+			return -1;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			stats.stop();
+			if (checkpoints != null) {
+				try {
+					checkpoints.await();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Record the boards on the path to the goal in a profile.
+	 */
+	private void profile(int goalNode, SearchProfile profile) {
+		profile.clearSolution();
+		NPuzzleState s = new NPuzzleState(squareSize);
+		for (int i = goalNode; i != NodeArena.NO_PARENT; i = arena.parent(i)) {
+			s.load(arena.board(i));
+			profile.solutionStep(arena.g(i), arena.g(goalNode) - arena.g(i), s, arena.h(i));
+		}
+	}
+
+	/**
+	 * Take a checkpoint. The search only pauses to copy the open list and the statistics; the nodes
+	 * added since the last checkpoint are appended to the node file on the writer's thread.
+	 */
+	private void checkpoint(SearchStats stats) throws IOException {
+		final int[] entries = open.values();
+		final int from = written, to = arena.size();
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(header);
+		out.writeInt(CHECKPOINT);
+		out.writeInt(squareSize);
+		out.writeInt(heuristic);
+		out.writeInt(to);
+		stats.writeTo(out);
+		final byte[] bytes = header.toByteArray();
+		final File nodes = nodeFile(checkpoints.getFile());
+
+		boolean submitted = checkpoints.submit(new CheckpointWriter.Snapshot() {
+			public void write(DataOutputStream file) throws IOException {
+				// The nodes must be on disk before a checkpoint refers to them //
+				try (FileChannel ch = FileChannel.open(nodes.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+					if (from == 0) ch.truncate(0);
+					ch.position((long) from * NodeArena.BYTES_PER_NODE);
+					arena.write(ch, from, to);
+					ch.force(false);
+				}
+				file.write(bytes);
+				file.writeInt(entries.length);
+				ByteBuffer b = ByteBuffer.allocate(entries.length * 4);	// big-endian, as DataInput reads it
+				b.asIntBuffer().put(entries);
+				file.write(b.array());
+			}
+		});
+		if (submitted) written = to;
+	}
+
+	/**
+	 * Solve an instance.
+	 * @param initial initial state of the puzzle
+	 * @param stats receives the search statistics, and limits the number of generated nodes
+	 * @return the actions of the solution, the last one first (as Node.getActions), or null if none was found
+	 */
+	public Action[] solve(NPuzzleState initial, SearchStats stats) {
+		int found = search(initial, stats);
+		return found < 0 ? null : arena.getActions(found);
+	}
+
+	private int heuristic(NPuzzleState s, SearchStats stats) {
+		if (!stats.timesHeuristic()) return estimator.estimate(s);
+		long start = System.nanoTime();
+		int h = estimator.estimate(s);
+		stats.countHeuristicTime(System.nanoTime() - start);
+		return h;
+	}
+}
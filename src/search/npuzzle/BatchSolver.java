@@ -0,0 +1,303 @@
+package search.npuzzle;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import search.Action;
+import search.Heuristic;
+import search.Node;
+import search.SearchStats;
+
+/**
+ * Solves a file of puzzle instances concurrently.
+ * Instances are read one per line as the tiles of the board in row-major order, separated by
+ * spaces or commas, with 0 for the empty space; empty lines and lines starting with '#' are skipped.
+ * Instances are handed to a worker pool while at most a fixed number are in flight, and results are
+ * passed on as soon as they are available, either in completion order or in input order.
+ */
+public class BatchSolver {
+
+	/**
+	 * The outcome of solving one instance.
+	 */
+	public static final class Result {
+		/** The position of the instance in the input, counting from 0 */
+		public final int index;
+		/** The actions that solve the instance in the order they are taken, or null if it was not solved */
+		public final Action[] actions;
+		/** The number of nodes expanded */
+		public final long expanded;
+		/** The wall-clock time of the search in milliseconds */
+		public final long millis;
+		/** Why the instance was not solved, or null if it was */
+		public final String error;
+
+		Result(int index, Action[] actions, long expanded, long millis, String error) {
+			this.index = index;
+			this.actions = actions;
+			this.expanded = expanded;
+			this.millis = millis;
+			this.error = error;
+		}
+
+		/**
+		 * @return the number of actions in the solution, or -1 if it was not solved
+		 */
+		public int length() {
+			return actions == null ? -1 : actions.length;
+		}
+
+		/**
+		 * @return the result as one tab-separated line
+		 */
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(index).append('\t');
+			sb.append(actions == null ? "FAILED" : String.valueOf(actions.length)).append('\t');
+			sb.append(expanded).append('\t').append(millis).append('\t');
+			if (actions == null) {
+				sb.append(error);
+			} else {
+				for (int i = 0; i < actions.length; i++) {
+					if (i > 0) sb.append(' ');
+					sb.append(actions[i]);
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Receives results as they become available.
+	 */
+	public interface ResultHandler {
+		/**
+		 * @param result the result of one instance
+		 */
+		void handle(Result result);
+	}
+
+	private final ExecutorService workers;
+	private final int maxInFlight;
+	private final Heuristic heuristic;
+	private final boolean ida;
+	private final long nodeLimit;
+
+	/**
+	 * Create a batch solver.
+	 * @param workers the pool that runs the searches
+	 * @param maxInFlight the most instances submitted but not yet handed to the result handler
+	 * @param heuristic integer value of the desired heuristic
+	 * @param ida true to search with IDA*, false for A*
+	 * @param nodeLimit the most nodes one search may generate (bounds its memory)
+	 */
+	public BatchSolver(ExecutorService workers, int maxInFlight, int heuristic, boolean ida, long nodeLimit) {
+		this(workers, maxInFlight, NPuzzleHeuristic.numbered(heuristic), ida, nodeLimit);
+	}
+
+	/**
+	 * Create a batch solver.
+	 * @param workers the pool that runs the searches
+	 * @param maxInFlight the most instances submitted but not yet handed to the result handler
+	 * @param heuristic the heuristic, e.g. the maximum of several
+	 * @param ida true to search with IDA*, false for A*
+	 * @param nodeLimit the most nodes one search may generate (bounds its memory)
+	 */
+	public BatchSolver(ExecutorService workers, int maxInFlight, Heuristic heuristic, boolean ida, long nodeLimit) {
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+		this.workers = workers;
+		this.maxInFlight = maxInFlight;
+		this.heuristic = heuristic;
+		this.ida = ida;
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Parse one line of an instance file.
+	 * @param line the tiles of the board in row-major order
+	 * @return the board
+	 * @throws IllegalArgumentException if the line is not a square board or cannot be solved
+	 */
+	public static NPuzzleState parse(String line) {
+		String[] parts = line.trim().split("[\\s,]+");
+		int size = (int) Math.round(Math.sqrt(parts.length));
+		if (size * size != parts.length)
+			throw new IllegalArgumentException("Not a square board: " + parts.length + " tiles");
+
+		int[][] tiles = new int[size][size];
+		boolean[] seen = new boolean[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			int t = Integer.parseInt(parts[i]);
+			if (t < 0 || t >= parts.length || seen[t])
+				throw new IllegalArgumentException("Bad or repeated tile: " + t);
+			seen[t] = true;
+			tiles[i / size][i % size] = t;
+		}
+		NPuzzleState state = new NPuzzleState(tiles);
+		if (!state.isSolvable())
+			throw new IllegalArgumentException("Unsolvable board");
+		return state;
+	}
+
+	/**
+	 * Solve one instance on the calling thread.
+	 * @param index the position of the instance in the input
+	 * @param state the instance
+	 * @return the result
+	 */
+	public Result solve(int index, NPuzzleState state) {
+		SearchStats stats = new SearchStats(nodeLimit);
+		Node goal;
+		try {
+			goal = ida ? Node.myIDA(state, heuristic, stats) : Node.myHA(state, heuristic, stats);
+		} catch (OutOfMemoryError e) {
+			return new Result(index, null, stats.getExpanded(), stats.getMillis(), "out of memory");
+		}
+		if (goal == null)
+			return new Result(index, null, stats.getExpanded(), stats.getMillis(),
+					stats.isLimitReached() ? "node limit reached" : "no solution");
+
+		// getActions lists the last action first //
+		Action[] reversed = goal.getActions();
+		Action[] actions = new Action[reversed.length];
+		for (int i = 0; i < reversed.length; i++) actions[i] = reversed[reversed.length - 1 - i];
+		return new Result(index, actions, stats.getExpanded(), stats.getMillis(), null);
+	}
+
+	/**
+	 * @param e a failure
+	 * @return its message, or its class for errors without one (e.g. StackOverflowError)
+	 */
+	static String describe(Throwable e) {
+		return e.getMessage() != null ? e.getMessage() : e.toString();
+	}
+
+	/**
+	 * Solve every instance read from the input.
+	 * @param in the instances, one per line
+	 * @param handler receives the results, always on the calling thread
+	 * @param ordered true to pass results on in input order, false to pass them on as they finish
+	 * @return the number of instances read
+	 * @throws IOException if the input cannot be read
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for results
+	 */
+	public int solveAll(BufferedReader in, ResultHandler handler, boolean ordered) throws IOException, InterruptedException {
+		final BlockingQueue<Result> done = new LinkedBlockingQueue<Result>();
+		Map<Integer, Result> pending = new HashMap<Integer, Result>();	// finished but waiting for their turn
+		int submitted = 0, handled = 0;
+		boolean eof = false;
+
+		while (!eof || handled < submitted) {
+			// Keep the pool busy while fewer than maxInFlight instances are outstanding //
+			while (!eof && submitted - handled < maxInFlight) {
+				String line = in.readLine();
+				if (line == null) {
+					eof = true;
+					break;
+				}
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) continue;
+
+				final int index = submitted++;
+				final String board = line;
+				workers.execute(new Runnable() {
+					public void run() {
+						// Every instance must post a result, or solveAll waits for it forever //
+						Result r;
+						try {
+							r = solve(index, parse(board));
+						} catch (Throwable e) {
+							r = new Result(index, null, 0, 0, describe(e));
+						}
+						done.add(r);
+					}
+				});
+			}
+			if (handled == submitted) continue;
+
+			Result r = done.take();
+			if (!ordered) {
+				handler.handle(r);
+				handled++;
+				continue;
+			}
+			pending.put(r.index, r);
+			while ((r = pending.remove(handled)) != null) {
+				handler.handle(r);
+				handled++;
+			}
+		}
+		return submitted;
+	}
+
+	/**
+	 * Create a pool of virtual threads if the JVM supports them (Java 21 and later).
+	 * @return the pool, or null if virtual threads are not available
+	 */
+	static ExecutorService virtualThreads() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Solve a file of instances and print one line per result:
+	 * index, solution length (or FAILED), nodes expanded, milliseconds, and the actions (or the reason).
+	 * @param args the instance file, followed by any of
+	 * -threads n (default: one per core), -virtual, -heuristic h (default 2, or e.g. max(6,5)), -ida,
+	 * -limit nodes, -inflight n (default: four per thread) and -ordered
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("usage: BatchSolver file [-threads n] [-virtual] [-heuristic h] [-ida] [-limit nodes] [-inflight n] [-ordered]");
+			System.exit(2);
+		}
+		int threads = Runtime.getRuntime().availableProcessors(), inFlight = -1;
+		Heuristic heuristic = Heuristic.numbered(2);
+		long limit = Long.MAX_VALUE;
+		boolean virtual = false, ida = false, ordered = false;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-virtual")) virtual = true;
+			else if (args[i].equals("-heuristic")) heuristic = NPuzzleHeuristic.parse(args[++i]);
+			else if (args[i].equals("-ida")) ida = true;
+			else if (args[i].equals("-limit")) limit = Long.parseLong(args[++i]);
+			else if (args[i].equals("-inflight")) inFlight = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-ordered")) ordered = true;
+			else throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		if (inFlight < 1) inFlight = 4 * threads;
+
+		ExecutorService pool = virtual ? virtualThreads() : null;
+		if (pool == null) {
+			if (virtual) System.err.println("Virtual threads not available, using " + threads + " threads");
+			pool = Executors.newFixedThreadPool(threads);
+		} else {
+			inFlight = Math.min(inFlight, threads);		// the in-flight window is the only bound on virtual threads
+		}
+
+		final PrintStream out = System.out;
+		BufferedReader in = new BufferedReader(new FileReader(args[0]));
+		try {
+			new BatchSolver(pool, inFlight, heuristic, ida, limit).solveAll(in, new ResultHandler() {
+				public void handle(Result result) {
+					out.println(result);
+				}
+			}, ordered);
+		} finally {
+			in.close();
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package search.npuzzle;
+
+import java.util.Arrays;
+
+/**
+ * Whole-board computations on boards stored as one byte per cell (those larger than 4x4): the
+ * heuristics that NPuzzleState otherwise keeps up to date move by move, and the comparison of two
+ * boards. They run once per board built from scratch and once per goal test or equality test.
+ *
+ * The implementation is chosen once: VectorBoardKernels, which compares and counts a register of
+ * cells at a time with the Vector API, if the JVM was started with
+ * "--add-modules jdk.incubator.vector", and the scalar loops here otherwise (or if the system
+ * property "npuzzle.vector" is "false"). VectorBoardKernels is in vector/ and only compiled by
+ * the "vector" Maven profile, so the jar of the default build always uses the scalar loops.
+ */
+class BoardKernels {
+	/** The kernels used by all boards */
+	static final BoardKernels INSTANCE = load();
+
+	private static BoardKernels load() {
+		if (!Boolean.parseBoolean(System.getProperty("npuzzle.vector", "true"))) return new BoardKernels();
+		if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return new BoardKernels();
+		try {
+			return (BoardKernels) Class.forName("search.npuzzle.VectorBoardKernels").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return new BoardKernels();
+		}
+	}
+
+	/**
+	 * @return the name of the implementation
+	 */
+	String name() {
+		return "scalar";
+	}
+
+	/**
+	 * @param cells the board
+	 * @param t the tables of its size
+	 * @return the number of tiles not in their goal cell (Heuristic 1)
+	 */
+	int misplaced(byte[] cells, BoardTables t) {
+		return misplaced(cells, t, 0);
+	}
+
+	/**
+	 * @return Heuristic 1 of the cells from the given one on
+	 */
+	static int misplaced(byte[] cells, BoardTables t, int from) {
+		int h = 0;
+		for (int i = from; i < t.cells; i++) {
+			if (cells[i] != 0 && cells[i] != t.goalCells[i]) h++;
+		}
+		return h;
+	}
+
+	/**
+	 * @param cells the board
+	 * @param t the tables of its size
+	 * @return the sum of the row and column distances of all tiles from their goal cells (Heuristic 2)
+	 */
+	int manhattan(byte[] cells, BoardTables t) {
+		return manhattan(cells, t, 0);
+	}
+
+	/**
+	 * @return Heuristic 2 of the cells from the given one on
+	 */
+	static int manhattan(byte[] cells, BoardTables t, int from) {
+		int h = 0;
+		for (int i = from; i < t.cells; i++) {
+			int tile = cells[i] & 0xFF;
+			if (tile == 0) continue;
+			h += Math.abs(t.rowOf[i] - t.goalRow[tile]) + Math.abs(t.colOf[i] - t.goalCol[tile]);
+		}
+		return h;
+	}
+
+	/**
+	 * @param cells the board
+	 * @param t the tables of its size
+	 * @return the number of tiles out of their goal row plus the number out of their goal column (Heuristic 4)
+	 */
+	int rowColumn(byte[] cells, BoardTables t) {
+		return rowColumn(cells, t, 0);
+	}
+
+	/**
+	 * @return Heuristic 4 of the cells from the given one on
+	 */
+	static int rowColumn(byte[] cells, BoardTables t, int from) {
+		int h = 0;
+		for (int i = from; i < t.cells; i++) {
+			int tile = cells[i] & 0xFF;
+			if (tile == 0) continue;
+			if (t.rowOf[i] != t.goalRow[tile]) h++;
+			if (t.colOf[i] != t.goalCol[tile]) h++;
+		}
+		return h;
+	}
+
+	/**
+	 * @param a a board
+	 * @param b a board of the same size
+	 * @return true if the boards have the same tile in every cell
+	 */
+	boolean equal(byte[] a, byte[] b) {
+		return Arrays.equals(a, b);
+	}
+}
@@ -0,0 +1,113 @@
+package search.npuzzle;
+
+import java.util.Random;
+
+/**
+ * Lookup tables shared by all NPuzzleStates of the same board size.
+ * The tables are built once per size and never modified afterwards.
+ */
+final class BoardTables {
+	/** Largest board side supported by the tables */
+	static final int MAX_SIZE = 15;
+	/** Largest board side that fits into a single long at 4 bits per cell */
+	static final int PACKED_MAX_SIZE = 4;
+	/** Fixed seed so Zobrist keys are identical between runs */
+	private static final long SEED = 0x9E3779B97F4A7C15L;
+	
+	private static final BoardTables[] tables = new BoardTables[MAX_SIZE + 1];
+	
+	/** The side length of the board */
+	final int squareSize;
+	/** The number of cells on the board */
+	final int cells;
+	/** Whether boards of this size are packed into a long */
+	final boolean packed;
+	/** The goal board packed into a long (boards up to 4x4) */
+	final long goalPacked;
+	/** The goal board as one byte per cell (larger boards) */
+	final byte[] goalCells;
+	/** The row of each cell */
+	final int[] rowOf;
+	/** The column of each cell */
+	final int[] colOf;
+	/** The row and the column of each cell as bytes, for the board kernels (larger boards) */
+	final byte[] rowBytes, colBytes;
+	/** The goal row of each tile (the space is given the last row) */
+	final int[] goalRow;
+	/** The goal column of each tile (the space is given the last column) */
+	final int[] goalCol;
+	/** Ranks the solvable boards by the cells of all tiles but the last two (boards up to 4x4) */
+	final PermutationRanking ranking;
+	/** Zobrist values, indexed by cell * cells + tile */
+	private final long[] zobrist;
+	
+	private BoardTables(int squareSize) {
+		this.squareSize = squareSize;
+		this.cells = squareSize * squareSize;
+		this.zobrist = new long[cells * cells];
+		this.packed = squareSize <= PACKED_MAX_SIZE;
+		
+		// The goal has tile i+1 in cell i and the space in the last cell //
+		long p = 0;
+		byte[] g = new byte[cells];
+		for (int i = 0; i < cells - 1; i++) {
+			p |= (long) (i + 1) << (i << 2);
+			g[i] = (byte) (i + 1);
+		}
+		this.goalPacked = packed ? p : 0;
+		this.goalCells = packed ? null : g;
+		this.ranking = packed ? new PermutationRanking(cells, cells - 2) : null;
+		
+		this.rowOf = new int[cells];
+		this.colOf = new int[cells];
+		this.goalRow = new int[cells];
+		this.goalCol = new int[cells];
+		this.rowBytes = packed ? null : new byte[cells];
+		this.colBytes = packed ? null : new byte[cells];
+		for (int i = 0; i < cells; i++) {
+			rowOf[i] = i / squareSize;
+			colOf[i] = i % squareSize;
+			if (!packed) {
+				rowBytes[i] = (byte) rowOf[i];
+				colBytes[i] = (byte) colOf[i];
+			}
+			
+			int goal = i == 0 ? cells - 1 : i - 1;	// tile i belongs in cell i-1
+			goalRow[i] = goal / squareSize;
+			goalCol[i] = goal % squareSize;
+		}
+		
+		Random random = new Random(SEED + squareSize);
+		for (int i = 0; i < zobrist.length; i++) {
+			if (i % cells == 0) continue;	// The space does not contribute to the key
+			zobrist[i] = random.nextLong();
+		}
+	}
+	
+	/**
+	 * @param squareSize the side length of the board
+	 * @return the (shared) tables for boards of that size
+	 */
+	static BoardTables forSize(int squareSize) {
+		if (squareSize < 2 || squareSize > MAX_SIZE)
+			throw new IllegalArgumentException("Unsupported puzzle size: " + squareSize);
+		
+		synchronized (tables) {
+			BoardTables t = tables[squareSize];
+			if (t == null) {
+				t = new BoardTables(squareSize);
+				tables[squareSize] = t;
+			}
+			return t;
+		}
+	}
+	
+	/**
+	 * @param cell the index of the cell (row * squareSize + column)
+	 * @param tile the tile occupying the cell
+	 * @return the Zobrist value of the tile at that cell (0 for the space)
+	 */
+	long zobrist(int cell, int tile) {
+		return zobrist[cell * cells + tile];
+	}
+}
@@ -0,0 +1,533 @@
+package search.npuzzle;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Breadth-first enumeration of a state space too large for the heap, with delayed duplicate
+ * detection. States are longs (e.g. packed boards, or the cells of the tiles of a pattern).
+ *
+ * A layer is a file of sorted, distinct keys. The next layer is made by streaming the last one and
+ * collecting the successors of its states in a buffer; every time the buffer fills it is sorted and
+ * written as a run. The runs are then merged, and at the same time the two previous layers are merged
+ * in and their keys dropped: every move can be undone, so a neighbour of the last layer is in that
+ * layer, the one before, or the next one. Only the run buffer and one read buffer per file are held
+ * in memory, so the size of the space is limited by the disk.
+ *
+ * The output is the number of states in each layer (in "layers.txt") and a file of the distance of
+ * every state ("distances.bin"): records of the key (8 bytes) and the distance (1 byte), in key order.
+ */
+public final class ExternalBFS {
+	/** The bytes of a read or write buffer */
+	private static final int IO_BUFFER = 1 << 16;
+
+	/**
+	 * A state space searched by ExternalBFS. Every move must be reversible.
+	 */
+	public interface Space {
+		/**
+		 * @return the state the search starts from
+		 */
+		long root();
+
+		/**
+		 * @param key a state
+		 * @param out receives the successors of the state
+		 * @return the number of successors
+		 */
+		int successors(long key, long[] out);
+
+		/**
+		 * @return the most successors any state has
+		 */
+		int maxSuccessors();
+	}
+
+	/**
+	 * The space of some tiles and the space on a board of any shape (e.g. 3x4), with the other tiles
+	 * unlabelled: a pattern space, or the whole board if every tile is given. A key holds the cell of
+	 * the space in its lowest 4 bits, then the cells of the tiles in the order given. Every move of the
+	 * space is counted, including moves of unlabelled tiles.
+	 *
+	 * The states also have dense ranks (see PermutationRanking), for tables and bitsets of them:
+	 * the placements of the space and the tiles, or, if every tile is given, of the space and all
+	 * tiles but the last two, whose order the parity of the reachable boards determines.
+	 */
+	public static final class TileSpace implements Space {
+		private final int rows, cols;
+		private final int[] tiles;
+		private final PermutationRanking ranking;
+
+		/**
+		 * @param rows the rows of the board
+		 * @param cols the columns of the board
+		 * @param tiles the tiles of the pattern (tile t belongs in cell t-1, the space in the last cell)
+		 */
+		public TileSpace(int rows, int cols, int... tiles) {
+			if (rows * cols > 16 || tiles.length > 15 || tiles.length >= rows * cols)
+				throw new IllegalArgumentException("A tile space has at most 16 cells and fewer tiles than cells");
+			for (int t : tiles) {
+				if (t < 1 || t >= rows * cols)
+					throw new IllegalArgumentException("No tile " + t + " on a " + rows + "x" + cols + " board");
+			}
+			this.rows = rows;
+			this.cols = cols;
+			this.tiles = tiles.clone();
+			int items = tiles.length + 1;
+			this.ranking = new PermutationRanking(rows * cols, items == rows * cols ? items - 2 : items);
+		}
+
+		public long root() {
+			long key = rows * cols - 1;
+			for (int i = 0; i < tiles.length; i++) key |= (long) (tiles[i] - 1) << (4 * (i + 1));
+			return key;
+		}
+
+		public int successors(long key, long[] out) {
+			int blank = (int) key & 0xF;
+			int row = blank / cols, col = blank % cols;
+			int n = 0;
+			for (int m = 0; m < 4; m++) {
+				int to;
+				if (m == 0) to = col > 0 ? blank - 1 : -1;
+				else if (m == 1) to = col < cols - 1 ? blank + 1 : -1;
+				else if (m == 2) to = row > 0 ? blank - cols : -1;
+				else to = row < rows - 1 ? blank + cols : -1;
+				if (to < 0) continue;
+
+				// A labelled tile in the target cell moves into the space //
+				long next = (key & ~0xFL) | to;
+				for (int i = 1; i <= tiles.length; i++) {
+					if (((int) (key >>> (4 * i)) & 0xF) == to) {
+						next = (next & ~(0xFL << (4 * i))) | (long) blank << (4 * i);
+						break;
+					}
+				}
+				out[n++] = next;
+			}
+			return n;
+		}
+
+		public int maxSuccessors() {
+			return 4;
+		}
+
+		/**
+		 * @return the number of ranks, one more than the largest
+		 */
+		public long ranks() {
+			return ranking.size();
+		}
+
+		/**
+		 * @return scratch space for rank and unrank
+		 */
+		public int[] newScratch() {
+			return ranking.newScratch();
+		}
+
+		/**
+		 * Rank a state. States reachable from the root have different ranks.
+		 * @param key a state
+		 * @param positions scratch space of one entry for the space and one per tile
+		 * @param scratch scratch space from newScratch
+		 * @return the rank, in [0, ranks())
+		 */
+		public long rank(long key, int[] positions, int[] scratch) {
+			for (int i = 0; i <= tiles.length; i++) positions[i] = (int) (key >>> (4 * i)) & 0xF;
+			return ranking.rank(positions, scratch);
+		}
+
+		/**
+		 * Turn a rank back into the state reachable from the root that has it.
+		 * @param rank a rank, in [0, ranks())
+		 * @param positions scratch space of one entry for the space and one per tile
+		 * @param scratch scratch space from newScratch
+		 * @return the state
+		 */
+		public long unrank(long rank, int[] positions, int[] scratch) {
+			ranking.unrank(rank, positions, scratch);
+			int cells = rows * cols, items = tiles.length + 1;
+			if (ranking.getItems() < items) {
+				// The last two tiles take the free cells, in the order the root can reach //
+				boolean[] used = new boolean[cells];
+				for (int i = 0; i < items - 2; i++) used[positions[i]] = true;
+				for (int c = 0, i = items - 2; c < cells; c++) {
+					if (!used[c]) positions[i++] = c;
+				}
+				int[] moved = new int[cells];	// from the root cell of every item to its cell
+				moved[cells - 1] = positions[0];
+				for (int i = 1; i < items; i++) moved[tiles[i - 1] - 1] = positions[i];
+				int spaceMoves = (rows - 1 - positions[0] / cols) + (cols - 1 - positions[0] % cols);
+				if (PermutationRanking.isEven(moved) != (spaceMoves % 2 == 0)) {
+					int c = positions[items - 2];
+					positions[items - 2] = positions[items - 1];
+					positions[items - 1] = c;
+				}
+			}
+			long key = 0;
+			for (int i = 0; i < items; i++) key |= (long) positions[i] << (4 * i);
+			return key;
+		}
+	}
+
+	/**
+	 * The outcome of a search.
+	 */
+	public static final class Result {
+		private final long[] layerSizes;
+		private final File distances;
+
+		Result(long[] layerSizes, File distances) {
+			this.layerSizes = layerSizes;
+			this.distances = distances;
+		}
+
+		/**
+		 * @return the number of states at each distance from the root
+		 */
+		public long[] getLayerSizes() {
+			return layerSizes.clone();
+		}
+
+		/**
+		 * @return the number of states reached
+		 */
+		public long getStates() {
+			long n = 0;
+			for (long s : layerSizes) n += s;
+			return n;
+		}
+
+		/**
+		 * @return the file of distances, or null if none was written
+		 */
+		public File getDistances() {
+			return distances;
+		}
+	}
+
+	private final File dir;
+	private final long[] buffer;
+
+	/**
+	 * Create a search.
+	 * @param dir the directory for the layer, run and output files (created if needed)
+	 * @param runLength the number of keys sorted in memory at a time
+	 */
+	public ExternalBFS(File dir, int runLength) {
+		if (runLength < 1)
+			throw new IllegalArgumentException("runLength must be positive: " + runLength);
+		this.dir = dir;
+		this.buffer = new long[runLength];
+	}
+
+	/**
+	 * Enumerate the space from its root.
+	 * @param space the state space
+	 * @param distances true to write the distance file (distances up to 255)
+	 * @return the layer sizes and the distance file
+	 * @throws IOException if a file cannot be written or read
+	 */
+	public Result run(Space space, boolean distances) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create " + dir);
+
+		List<File> layers = new ArrayList<File>();
+		List<Long> sizes = new ArrayList<Long>();
+		File first = layer(0);
+		try (LongWriter w = new LongWriter(first)) {
+			w.write(space.root());
+		}
+		layers.add(first);
+		sizes.add(1L);
+
+		long[] out = new long[space.maxSuccessors()];
+		while (true) {
+			int depth = layers.size();
+			List<File> runs = expand(layers.get(depth - 1), space, out, depth);
+			File next = layer(depth);
+			long n = merge(runs, layers.get(depth - 1), depth > 1 ? layers.get(depth - 2) : null, next);
+			for (File r : runs) delete(r);
+			if (n == 0) {
+				delete(next);
+				break;
+			}
+			layers.add(next);
+			sizes.add(n);
+		}
+
+		long[] layerSizes = new long[sizes.size()];
+		try (PrintWriter p = new PrintWriter(new BufferedWriter(new FileWriter(new File(dir, "layers.txt"))))) {
+			for (int d = 0; d < layerSizes.length; d++) {
+				layerSizes[d] = sizes.get(d);
+				p.println(d + "\t" + layerSizes[d]);
+			}
+		}
+		File table = null;
+		if (distances) {
+			if (layers.size() > 256)
+				throw new IOException("Distances above 255 do not fit the distance file");
+			table = new File(dir, "distances.bin");
+			writeDistances(layers, table);
+		}
+		for (File l : layers) delete(l);
+		return new Result(layerSizes, table);
+	}
+
+	/**
+	 * Enumerate a tile space in memory instead, for spaces with few enough ranks: the closed list is
+	 * a bitset of the ranks of all states, one bit per state of the space (23 KB for the whole 3x3
+	 * board), and the open list the ranks of the last layer. No files are written.
+	 * @param space the state space
+	 * @return the layer sizes (without a distance file)
+	 * @throws IllegalArgumentException if the space has too many ranks for a bitset
+	 */
+	public static Result inMemory(TileSpace space) {
+		RankBitSet closed = new RankBitSet(space.ranks());
+		int[] positions = new int[space.tiles.length + 1], scratch = space.newScratch();
+		long[] layer = { space.rank(space.root(), positions, scratch) };
+		int size = 1;
+		closed.add(layer[0]);
+
+		List<Long> sizes = new ArrayList<Long>();
+		long[] out = new long[space.maxSuccessors()];
+		while (size > 0) {
+			sizes.add((long) size);
+			long[] next = new long[Math.max(16, size)];
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				int m = space.successors(space.unrank(layer[i], positions, scratch), out);
+				for (int j = 0; j < m; j++) {
+					long r = space.rank(out[j], positions, scratch);
+					if (!closed.add(r)) continue;
+					if (n == next.length) next = Arrays.copyOf(next, 2 * n);
+					next[n++] = r;
+				}
+			}
+			layer = next;
+			size = n;
+		}
+
+		long[] layerSizes = new long[sizes.size()];
+		for (int d = 0; d < layerSizes.length; d++) layerSizes[d] = sizes.get(d);
+		return new Result(layerSizes, null);
+	}
+
+	private File layer(int depth) {
+		return new File(dir, "layer-" + depth + ".bin");
+	}
+
+	/**
+	 * Generate the successors of a layer into sorted runs without repeats.
+	 * @return the run files
+	 */
+	private List<File> expand(File layer, Space space, long[] out, int depth) throws IOException {
+		List<File> runs = new ArrayList<File>();
+		int n = 0;
+		try (LongReader r = new LongReader(layer)) {
+			while (r.next()) {
+				int k = space.successors(r.value(), out);
+				for (int i = 0; i < k; i++) {
+					if (n == buffer.length) {
+						runs.add(writeRun(n, depth, runs.size()));
+						n = 0;
+					}
+					buffer[n++] = out[i];
+				}
+			}
+		}
+		if (n > 0) runs.add(writeRun(n, depth, runs.size()));
+		return runs;
+	}
+
+	private File writeRun(int n, int depth, int index) throws IOException {
+		Arrays.sort(buffer, 0, n);
+		File f = new File(dir, "run-" + depth + "-" + index + ".bin");
+		try (LongWriter w = new LongWriter(f)) {
+			for (int i = 0; i < n; i++) {
+				if (i == 0 || buffer[i] != buffer[i - 1]) w.write(buffer[i]);
+			}
+		}
+		return f;
+	}
+
+	/**
+	 * Merge the runs into the next layer, dropping repeats and the keys of the two previous layers.
+	 * @return the number of keys in the next layer
+	 */
+	private long merge(List<File> runs, File last, File beforeLast, File next) throws IOException {
+		PriorityQueue<LongReader> heap = new PriorityQueue<LongReader>();
+		List<LongReader> open = new ArrayList<LongReader>();
+		long n = 0;
+		try (LongReader a = new LongReader(last); LongReader b = beforeLast == null ? null : new LongReader(beforeLast);
+				LongWriter w = new LongWriter(next)) {
+			for (File f : runs) {
+				LongReader r = new LongReader(f);
+				open.add(r);
+				if (r.next()) heap.add(r);
+			}
+			boolean hasA = a.next(), hasB = b != null && b.next();
+			long previous = 0;
+			boolean any = false;
+			while (!heap.isEmpty()) {
+				LongReader r = heap.poll();
+				long key = r.value();
+				if (r.next()) heap.add(r);
+				if (any && key == previous) continue;
+				previous = key;
+				any = true;
+
+				// Both layers are sorted, so they are walked in step with the runs //
+				while (hasA && Long.compare(a.value(), key) < 0) hasA = a.next();
+				while (hasB && Long.compare(b.value(), key) < 0) hasB = b.next();
+				if (hasA && a.value() == key || hasB && b.value() == key) continue;
+				w.write(key);
+				n++;
+			}
+		} finally {
+			for (LongReader r : open) r.close();
+		}
+		return n;
+	}
+
+	/**
+	 * Merge all layers into one file of keys and distances, in key order.
+	 */
+	private void writeDistances(List<File> layers, File table) throws IOException {
+		PriorityQueue<LongReader> heap = new PriorityQueue<LongReader>();
+		List<LongReader> open = new ArrayList<LongReader>();
+		try (FileChannel ch = FileChannel.open(table.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (int d = 0; d < layers.size(); d++) {
+				LongReader r = new LongReader(layers.get(d));
+				r.tag = d;
+				open.add(r);
+				if (r.next()) heap.add(r);
+			}
+			ByteBuffer out = ByteBuffer.allocateDirect(IO_BUFFER / 9 * 9).order(ByteOrder.LITTLE_ENDIAN);
+			while (!heap.isEmpty()) {
+				LongReader r = heap.poll();
+				if (out.remaining() < 9) drain(ch, out);
+				out.putLong(r.value()).put((byte) r.tag);
+				if (r.next()) heap.add(r);
+			}
+			drain(ch, out);
+		} finally {
+			for (LongReader r : open) r.close();
+		}
+	}
+
+	private static void drain(FileChannel ch, ByteBuffer b) throws IOException {
+		b.flip();
+		while (b.hasRemaining()) ch.write(b);
+		b.clear();
+	}
+
+	private static void delete(File f) throws IOException {
+		if (f.exists() && !f.delete())
+			throw new IOException("Cannot delete " + f);
+	}
+
+	/**
+	 * Writes longs to a file through a direct buffer.
+	 */
+	private static final class LongWriter implements AutoCloseable {
+		private final FileChannel ch;
+		private final ByteBuffer b = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+		LongWriter(File f) throws IOException {
+			ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		void write(long v) throws IOException {
+			if (!b.hasRemaining()) drain(ch, b);
+			b.putLong(v);
+		}
+
+		public void close() throws IOException {
+			try {
+				drain(ch, b);
+			} finally {
+				ch.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads longs from a file through a direct buffer; ordered by the current value, for merging.
+	 */
+	private static final class LongReader implements AutoCloseable, Comparable<LongReader> {
+		private final FileChannel ch;
+		private final ByteBuffer b = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+		private long value;
+		/** The layer the file holds, when merging layers */
+		int tag;
+
+		LongReader(File f) throws IOException {
+			ch = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+			b.limit(0);
+		}
+
+		/**
+		 * @return false at the end of the file
+		 */
+		boolean next() throws IOException {
+			if (b.remaining() < 8) {
+				b.compact();
+				while (b.position() < 8 && ch.read(b) > 0) { }
+				b.flip();
+				if (b.remaining() < 8) return false;
+			}
+			value = b.getLong();
+			return true;
+		}
+
+		long value() {
+			return value;
+		}
+
+		public int compareTo(LongReader o) {
+			return Long.compare(value, o.value);
+		}
+
+		public void close() throws IOException {
+			ch.close();
+		}
+	}
+
+	/**
+	 * Enumerate a tile space and print the layer sizes.
+	 * @param args rows, columns, the directory for the files (or -memory to search in memory), and
+	 * the tiles (default: all tiles)
+	 * @throws IOException if a file cannot be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("usage: ExternalBFS rows cols dir|-memory [tile ...]");
+			System.exit(2);
+		}
+		int rows = Integer.parseInt(args[0]), cols = Integer.parseInt(args[1]);
+		int[] tiles = new int[args.length > 3 ? args.length - 3 : rows * cols - 1];
+		for (int i = 0; i < tiles.length; i++) tiles[i] = args.length > 3 ? Integer.parseInt(args[i + 3]) : i + 1;
+
+		long start = System.nanoTime();
+		TileSpace space = new TileSpace(rows, cols, tiles);
+		Result r = args[2].equals("-memory") ? inMemory(space) : new ExternalBFS(new File(args[2]), 1 << 24).run(space, true);
+		long[] sizes = r.getLayerSizes();
+		for (int d = 0; d < sizes.length; d++) System.out.println(d + "\t" + sizes[d]);
+		System.out.println("states " + r.getStates() + "\ttime " + (System.nanoTime() - start) / 1000000 + "ms");
+	}
+}
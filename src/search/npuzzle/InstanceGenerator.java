@@ -0,0 +1,212 @@
+package search.npuzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import search.Action;
+import search.ActionStatePair;
+
+/**
+ * Generates puzzle instances whose optimal solution has an exact number of moves.
+ * The same size and seed always give the same instances.
+ *
+ * Small depths on boards up to 4x4 are drawn uniformly from the layers of a breadth-first search
+ * backwards from the goal, which is computed once per generator. Other depths are reached by
+ * climbing away from the goal one move at a time: every move changes the optimal distance by exactly
+ * one, so a move is kept when a depth-bounded search proves it cannot be solved in fewer moves than
+ * the board it came from. No full search is ever run, and a board is never solved twice.
+ */
+public final class InstanceGenerator {
+	/** The most boards the breadth-first layers may hold */
+	private static final int LAYER_LIMIT = 1 << 21;
+	/** The most times a climb may restart after getting stuck before the depth is deemed unreachable */
+	private static final int MAX_RESTARTS = 1000;
+
+	private final int squareSize;
+	private final Random random;
+	/** The boards at each distance from the goal, packed, as far as the limit allows */
+	private final List<long[]> layers = new ArrayList<long[]>();
+	/** True once the next layer would exceed the limit, or every board has been reached */
+	private boolean layersComplete;
+	/** True if the layers hold every board, so no board is deeper than the last layer */
+	private boolean exhausted;
+
+	/**
+	 * Create a generator.
+	 * @param squareSize the size of the boards
+	 * @param seed the seed of the random choices
+	 */
+	public InstanceGenerator(int squareSize, long seed) {
+		BoardTables.forSize(squareSize);	// checks the size
+		this.squareSize = squareSize;
+		this.random = new Random(seed);
+		this.layersComplete = squareSize > BoardTables.PACKED_MAX_SIZE;
+	}
+
+	/**
+	 * Generate one instance.
+	 * @param depth the number of moves of an optimal solution
+	 * @return a board whose optimal solution takes exactly that many moves
+	 * @throws IllegalArgumentException if no board is that far from the goal
+	 */
+	public NPuzzleState atDepth(int depth) {
+		if (depth < 0)
+			throw new IllegalArgumentException("Negative depth " + depth);
+		growLayers(depth);
+		if (depth < layers.size()) {
+			long[] layer = layers.get(depth);
+			return new NPuzzleState(squareSize, layer[random.nextInt(layer.length)]);
+		}
+		if (exhausted)
+			throw new IllegalArgumentException("No board of size " + squareSize + " is " + depth + " moves from the goal");
+		return climb(depth);
+	}
+
+	/**
+	 * Generate a set of instances.
+	 * @param depth the number of moves of an optimal solution
+	 * @param count the number of instances
+	 * @return the instances (not necessarily distinct)
+	 */
+	public NPuzzleState[] atDepth(int depth, int count) {
+		NPuzzleState[] instances = new NPuzzleState[count];
+		for (int i = 0; i < count; i++) instances[i] = atDepth(depth);
+		return instances;
+	}
+
+	/**
+	 * Extend the breadth-first layers up to a depth, or until the next layer would not fit.
+	 * @param depth the deepest layer wanted
+	 */
+	private void growLayers(int depth) {
+		if (layersComplete) return;
+		NPuzzleState parent = new NPuzzleState(squareSize), child = new NPuzzleState(squareSize);
+		if (layers.isEmpty()) layers.add(new long[] { parent.packed() });
+
+		// Only the two previous layers can hold a neighbour of the next one //
+		while (layers.size() <= depth) {
+			long[] last = layers.get(layers.size() - 1);
+			long[] previous = layers.size() > 1 ? layers.get(layers.size() - 2) : new long[0];
+			int known = layers.size() > 1 ? previous.length + last.length : last.length;
+			LongIntMap seen = new LongIntMap(Math.min(LAYER_LIMIT, known + last.length * 3));
+			for (long b : previous) seen.put(b, 0);
+			for (long b : last) seen.put(b, 0);
+
+			long[] next = new long[16];
+			int n = 0;
+			for (long b : last) {
+				parent.load(b);
+				for (Action a : NodeArena.ACTIONS) {
+					int from = parent.target(a);
+					if (from < 0) continue;
+					child.copyFrom(parent);
+					child.slide(from);
+					long cb = child.packed();
+					if (seen.get(cb) >= 0) continue;
+					if (!seen.put(cb, 0) || total() + n >= LAYER_LIMIT) {
+						layersComplete = true;	// the next layer is too large, climb instead
+						return;
+					}
+					if (n == next.length) next = Arrays.copyOf(next, n * 2);
+					next[n++] = cb;
+				}
+			}
+			if (n == 0) {
+				layersComplete = exhausted = true;	// every board has been reached
+				return;
+			}
+			layers.add(Arrays.copyOf(next, n));
+		}
+	}
+
+	private long total() {
+		long n = 0;
+		for (long[] layer : layers) n += layer.length;
+		return n;
+	}
+
+	/**
+	 * Walk away from the goal, keeping only moves that make the board one move harder.
+	 * Starts from the deepest breadth-first layer when there is one.
+	 * @param depth the distance to reach
+	 * @return a board at exactly that distance
+	 */
+	private NPuzzleState climb(int depth) {
+		for (int attempt = 0; attempt < MAX_RESTARTS; attempt++) {
+			int k = layers.isEmpty() ? 0 : layers.size() - 1;
+			NPuzzleState s = k == 0 ? new NPuzzleState(squareSize) : atDepth(k);
+			while (k < depth) {
+				NPuzzleState next = null;
+				List<NPuzzleState> moves = new ArrayList<NPuzzleState>();
+				for (ActionStatePair p : s.successor()) moves.add((NPuzzleState) p.getState());
+				while (!moves.isEmpty()) {
+					NPuzzleState m = moves.remove(random.nextInt(moves.size()));
+					// A neighbour is either k-1 or k+1 moves from the goal //
+					if (!solvableWithin(m, k - 1)) {
+						next = m;
+						break;
+					}
+				}
+				if (next == null) break;	// every move leads back, start again
+				s = next;
+				k++;
+			}
+			if (k == depth) return s;
+		}
+		throw new IllegalArgumentException("No board of size " + squareSize + " found " + depth + " moves from the goal");
+	}
+
+	/**
+	 * Check whether a board can be solved in at most a number of moves, by a depth-first search
+	 * pruned with the Manhattan distance.
+	 * @param s the board
+	 * @param bound the most moves allowed
+	 * @return true if the board can be solved within the bound
+	 */
+	static boolean solvableWithin(NPuzzleState s, int bound) {
+		if (bound < 0) return false;
+		return within(new NPuzzleState(s), bound, -1);
+	}
+
+	private static boolean within(NPuzzleState s, int bound, int back) {
+		int h = s.getH2();
+		if (h > bound) return false;
+		if (h == 0) return true;
+		int blank = s.blank();
+		for (Action a : NodeArena.ACTIONS) {
+			int from = s.target(a);
+			if (from < 0 || from == back) continue;		// off the board, or undoing the last move
+			s.slide(from);
+			boolean found = within(s, bound - 1, blank);
+			s.slide(blank);		// undo
+			if (found) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Print instances in the format read by BatchSolver: one board per line, tiles in row-major order.
+	 * @param args size, depth, count and optionally the seed (default 1)
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println("usage: InstanceGenerator size depth count [seed]");
+			System.exit(2);
+		}
+		int size = Integer.parseInt(args[0]), depth = Integer.parseInt(args[1]), count = Integer.parseInt(args[2]);
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		InstanceGenerator generator = new InstanceGenerator(size, seed);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			NPuzzleState s = generator.atDepth(depth);
+			sb.setLength(0);
+			for (int c = 0; c < size * size; c++) {
+				if (c > 0) sb.append(' ');
+				sb.append(s.tile(c));
+			}
+			System.out.println(sb);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package search.npuzzle;
+
+import java.util.Arrays;
+
+/**
+ * A bucket queue of node indices, as search.BucketQueue but without an object per entry:
+ * one bucket per priority, and within a bucket one stack per g value so that ties are broken
+ * in favour of the deepest node.
+ */
+final class IntBucketQueue {
+	/** The stacks, indexed by priority and then g (null until used) */
+	private int[][][] stacks = new int[64][][];
+	private int[][] counts = new int[64][];
+	/** No bucket below this priority holds an entry */
+	private int min = Integer.MAX_VALUE;
+	/** The highest g used in each bucket (a stack above it may be empty) */
+	private int[] top = new int[64];
+	private int size;
+
+	/**
+	 * Add an entry to the queue.
+	 * @param priority the priority of the entry, lower is taken first
+	 * @param g the tie-breaker within a priority, higher is taken first
+	 * @param value the entry
+	 */
+	void put(int priority, int g, int value) {
+		if (priority >= stacks.length) {
+			int length = Math.max(stacks.length * 2, priority + 1);
+			stacks = Arrays.copyOf(stacks, length);
+			counts = Arrays.copyOf(counts, length);
+			top = Arrays.copyOf(top, length);
+		}
+		int[][] bucket = stacks[priority];
+		if (bucket == null) {
+			bucket = new int[Math.max(8, g + 1)][];
+			stacks[priority] = bucket;
+			counts[priority] = new int[bucket.length];
+			top[priority] = -1;
+		} else if (g >= bucket.length) {
+			int length = Math.max(bucket.length * 2, g + 1);
+			bucket = Arrays.copyOf(bucket, length);
+			stacks[priority] = bucket;
+			counts[priority] = Arrays.copyOf(counts[priority], length);
+		}
+		int[] s = bucket[g];
+		int n = counts[priority][g];
+		if (s == null) {
+			s = new int[16];
+			bucket[g] = s;
+		} else if (n == s.length) {
+			s = Arrays.copyOf(s, n * 2);
+			bucket[g] = s;
+		}
+		s[n] = value;
+		counts[priority][g] = n + 1;
+		if (g > top[priority]) top[priority] = g;
+		if (priority < min) min = priority;
+		size++;
+	}
+
+	/**
+	 * Remove the entry with the lowest priority (and highest g among those).
+	 * @return the entry, or -1 if the queue is empty
+	 */
+	int poll() {
+		if (size == 0) return -1;
+		while (top[min] < 0) min++;
+		int[] c = counts[min];
+		int g = top[min];
+		while (c[g] == 0) g--;
+		int value = stacks[min][g][--c[g]];
+		// Keep top at the highest non-empty stack, or -1 when the bucket is empty //
+		while (g >= 0 && c[g] == 0) g--;
+		top[min] = g;
+		size--;
+		return value;
+	}
+
+	/**
+	 * @return the number of entries in the queue
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return all entries, in no particular order
+	 */
+	int[] values() {
+		int[] values = new int[size];
+		int n = 0;
+		for (int p = 0; p < stacks.length; p++) {
+			if (stacks[p] == null) continue;
+			for (int g = 0; g < stacks[p].length; g++) {
+				int c = counts[p][g];
+				if (c > 0) {
+					System.arraycopy(stacks[p][g], 0, values, n, c);
+					n += c;
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Remove all entries, keeping the memory.
+	 */
+	void clear() {
+		for (int p = 0; p < counts.length; p++) {
+			if (counts[p] != null) Arrays.fill(counts[p], 0);
+			top[p] = -1;
+		}
+		min = Integer.MAX_VALUE;
+		size = 0;
+	}
+}
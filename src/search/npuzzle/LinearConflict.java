@@ -0,0 +1,165 @@
+package search.npuzzle;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The linear conflicts of a board, read from tables built once per board size.
+ *
+ * Two tiles are in conflict when both are in their goal row (or column) but in the wrong order
+ * there: one of them must leave the line and come back, two moves the Manhattan distance does not
+ * count. For each line the tiles that belong in it are described by their goal positions in the
+ * order they stand, and the table holds twice the number of those tiles that are not in the longest
+ * correctly ordered subsequence. Rows and columns are independent, so the sum over all lines added
+ * to the Manhattan distance is admissible.
+ *
+ * Boards up to 4x4 look a whole packed row or column up at once; larger boards encode each line in base n+1,
+ * with a table up to MAX_TABLE_SIZE and the conflicts computed directly beyond that.
+ */
+final class LinearConflict {
+	/** The largest table of line codes for boards that are not packed */
+	private static final int MAX_TABLE_SIZE = 1 << 22;
+
+	/** Read on every evaluation, so looked up without a lock once built */
+	private static final AtomicReferenceArray<LinearConflict> tables = new AtomicReferenceArray<LinearConflict>(BoardTables.MAX_SIZE + 1);
+
+	private final BoardTables board;
+	private final int n;
+	/**
+	 * For packed boards, the conflicts of row r indexed by r * 2^(4n) + the 4n bits of the row, and of
+	 * column c indexed by (n + c) * 2^(4n) + the tiles of the column at 4 bits each.
+	 * Otherwise the conflicts of a line code, or null if the codes are too many.
+	 */
+	private final byte[] conflicts;
+	/**
+	 * For packed boards, the tiles of a row indexed by its 4n bits, each moved to the first nibble of
+	 * the 4n bits of its column, so shifting the rows into place and adding them gives all columns
+	 */
+	private final long[] spread;
+
+	private LinearConflict(int squareSize) {
+		this.board = BoardTables.forSize(squareSize);
+		this.n = squareSize;
+		if (board.packed) {
+			int lineCodes = 1 << (4 * n);
+			conflicts = new byte[2 * n * lineCodes];
+			int[] goals = new int[n];
+			for (int line = 0; line < 2 * n; line++) {
+				boolean row = line < n;
+				int index = row ? line : line - n;
+				for (int code = 0; code < lineCodes; code++) {
+					// Goal positions along the line of the tiles that belong in it, in standing order //
+					int k = 0;
+					for (int i = 0; i < n; i++) {
+						int t = (code >>> (4 * i)) & 0xF;
+						if (t == 0 || t >= board.cells) continue;
+						if (row ? board.goalRow[t] == index : board.goalCol[t] == index)
+							goals[k++] = row ? board.goalCol[t] : board.goalRow[t];
+					}
+					conflicts[line * lineCodes + code] = (byte) lineConflicts(goals, k);
+				}
+			}
+			spread = new long[lineCodes];
+			for (int code = 0; code < lineCodes; code++) {
+				for (int c = 0; c < n; c++) spread[code] |= (long) ((code >>> (4 * c)) & 0xF) << (4 * n * c);
+			}
+		} else if (Math.pow(n + 1, n) <= MAX_TABLE_SIZE) {
+			int codes = (int) Math.pow(n + 1, n);
+			conflicts = new byte[codes];
+			spread = null;
+			int[] goals = new int[n];
+			for (int code = 0; code < codes; code++) {
+				int k = 0;
+				for (int c = code, i = 0; i < n; i++, c /= n + 1) {
+					if (c % (n + 1) != 0) goals[k++] = c % (n + 1) - 1;
+				}
+				// The digits were read last position first //
+				for (int i = 0, j = k - 1; i < j; i++, j--) {
+					int g = goals[i];
+					goals[i] = goals[j];
+					goals[j] = g;
+				}
+				conflicts[code] = (byte) lineConflicts(goals, k);
+			}
+		} else {
+			conflicts = null;
+			spread = null;
+		}
+	}
+
+	/**
+	 * @param squareSize the side length of the board
+	 * @return the (shared) tables for boards of that size
+	 */
+	static LinearConflict forSize(int squareSize) {
+		LinearConflict t = tables.get(squareSize);
+		if (t != null) return t;
+		synchronized (tables) {
+			t = tables.get(squareSize);
+			if (t == null) {
+				t = new LinearConflict(squareSize);
+				tables.set(squareSize, t);
+			}
+			return t;
+		}
+	}
+
+	/**
+	 * The moves needed to resolve the conflicts of one line.
+	 * @param goals the goal positions along the line of the tiles that belong in it, in standing order
+	 * @param k the number of such tiles
+	 * @return twice the number of tiles outside a longest increasing subsequence
+	 */
+	static int lineConflicts(int[] goals, int k) {
+		if (k < 2) return 0;
+		int[] longest = new int[k];
+		int best = 0;
+		for (int i = 0; i < k; i++) {
+			longest[i] = 1;
+			for (int j = 0; j < i; j++) {
+				if (goals[j] < goals[i] && longest[j] + 1 > longest[i]) longest[i] = longest[j] + 1;
+			}
+			best = Math.max(best, longest[i]);
+		}
+		return 2 * (k - best);
+	}
+
+	/**
+	 * @param s a board of this size
+	 * @return the extra moves of all linear conflicts, to be added to the Manhattan distance
+	 */
+	int estimate(NPuzzleState s) {
+		if (board.packed) {
+			long p = s.packed();
+			int bits = 4 * n, lineCodes = 1 << bits, mask = lineCodes - 1;
+			int sum = 0;
+			long columns = 0;
+			for (int r = 0; r < n; r++) {
+				int row = (int) (p >>> (r * bits)) & mask;
+				sum += conflicts[r * lineCodes + row];
+				columns |= spread[row] << (4 * r);
+			}
+			for (int c = 0; c < n; c++) {
+				sum += conflicts[(n + c) * lineCodes + ((int) (columns >>> (c * bits)) & mask)];
+			}
+			return sum;
+		}
+
+		int sum = 0;
+		int[] goals = conflicts == null ? new int[n] : null;
+		for (int line = 0; line < 2 * n; line++) {
+			boolean row = line < n;
+			int index = row ? line : line - n;
+			int code = 0, k = 0;
+			for (int i = 0; i < n; i++) {
+				int t = s.tile(row ? index * n + i : i * n + index);
+				int digit = 0;
+				if (t != 0 && (row ? board.goalRow[t] == index : board.goalCol[t] == index))
+					digit = (row ? board.goalCol[t] : board.goalRow[t]) + 1;
+				if (goals == null) code = code * (n + 1) + digit;
+				else if (digit != 0) goals[k++] = digit - 1;
+			}
+			sum += goals == null ? conflicts[code] : lineConflicts(goals, k);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,82 @@
+package search.npuzzle;
+
+/**
+ * A fixed-size hash map from non-zero long keys to int values, with open addressing and linear
+ * probing in two primitive arrays. It never allocates after construction, so a search can be given
+ * a memory budget up front. 0 is never a packed board, so it marks an empty slot.
+ */
+final class LongIntMap {
+	/** The least bytes taken per entry the map can hold (up to twice as many once rounded to a power of two) */
+	static final int BYTES_PER_ENTRY = 2 * (8 + 4) + 4;
+
+	private final long[] keys;
+	private final int[] values;
+	/** The slots in use, so clearing costs the number of entries rather than the capacity */
+	private final int[] used;
+	private final int mask;
+	private final int capacity;
+	private int size;
+
+	/**
+	 * Create an empty map.
+	 * @param capacity the most entries the map must hold (it is kept at most half full)
+	 */
+	LongIntMap(int capacity) {
+		if (capacity > 1 << 29)
+			throw new IllegalArgumentException("Map too large: " + capacity);
+		int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+		this.keys = new long[slots];
+		this.values = new int[slots];
+		this.used = new int[capacity];
+		this.mask = slots - 1;
+		this.capacity = capacity;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		int i = (int) (h ^ (h >>> 32)) & mask;
+		while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * @param key a non-zero key
+	 * @return the value of the key, or -1 if it is not in the map
+	 */
+	int get(long key) {
+		int i = slot(key);
+		return keys[i] == 0 ? -1 : values[i];
+	}
+
+	/**
+	 * Set the value of a key.
+	 * @param key a non-zero key
+	 * @param value the value
+	 * @return false if the key is new and the map is full
+	 */
+	boolean put(long key, int value) {
+		int i = slot(key);
+		if (keys[i] == 0) {
+			if (size == capacity) return false;
+			keys[i] = key;
+			used[size++] = i;
+		}
+		values[i] = value;
+		return true;
+	}
+
+	/**
+	 * @return the number of entries in the map
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all entries, keeping the memory.
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) keys[used[i]] = 0;
+		size = 0;
+	}
+}
@@ -0,0 +1,324 @@
+package search.npuzzle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import search.Action;
+import search.MovePruner;
+
+/**
+ * Move pruning for the N-Puzzle, learned offline. Learning the shared automaton takes seconds, so
+ * main writes it to a resource next to this class (move-automaton.bin.gz), which is built into the
+ * jar and read on first use; only without the resource is it learned in the running process.
+ *
+ * Every sequence of moves of the space up to a maximum length is tried from the middle of a board
+ * large enough that no sequence reaches its edge. A sequence is a duplicate when an earlier one
+ * (shorter, or as long and first in move order) leaves every tile in the same place and keeps the
+ * space within the rows and columns the sequence itself visits: wherever the duplicate can be
+ * played the earlier one can too, so any path that contains the duplicate can be replaced by one
+ * that is no longer. The duplicates (undoing the last move among them) are then compiled into an
+ * Aho-Corasick automaton that rejects every move completing one of them.
+ */
+final class MoveAutomaton implements MovePruner {
+	/** The longest duplicate sequence learned for the shared automaton */
+	static final int DEFAULT_LENGTH = 12;
+	/** The resource holding the shared automaton, written by main */
+	static final String RESOURCE = "move-automaton.bin.gz";
+	/** The first int of the resource */
+	private static final int MAGIC = 0x4E504D41;	// "NPMA"
+	/** Row and column change of the space for each move code (the order of NodeArena.ACTIONS) */
+	private static final int[] DR = { 0, 0, -1, 1 }, DC = { -1, 1, 0, 0 };
+
+	private static MoveAutomaton standard;
+
+	/** The next state of the machine, indexed by state * 4 + move code, -1 where the move is rejected */
+	private final int[] next;
+
+	private MoveAutomaton(int[] next) {
+		this.next = next;
+	}
+
+	/**
+	 * @return the automaton learned from sequences up to DEFAULT_LENGTH, shared by all board sizes:
+	 * read from the resource, or learned now if there is none for DEFAULT_LENGTH
+	 * @throws UncheckedIOException if the resource cannot be read
+	 */
+	static synchronized MoveAutomaton standard() {
+		if (standard == null) standard = load();
+		if (standard == null) standard = build(duplicates(DEFAULT_LENGTH));
+		return standard;
+	}
+
+	/**
+	 * @return the automaton of the resource, or null if there is none (or it was learned from
+	 * sequences of another length)
+	 */
+	private static MoveAutomaton load() {
+		InputStream resource = MoveAutomaton.class.getResourceAsStream(RESOURCE);
+		if (resource == null) return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(resource)))) {
+			if (in.readInt() != MAGIC || in.readInt() != DEFAULT_LENGTH) return null;
+			int[] next = new int[in.readInt()];
+			for (int i = 0; i < next.length; i++) next[i] = in.readInt();
+			return new MoveAutomaton(next);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Learn the shared automaton and write it as the resource, to be copied next to this class.
+	 * @param args the file to write (default: the resource name in the current directory)
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		String file = args.length > 0 ? args[0] : RESOURCE;
+		long start = System.nanoTime();
+		MoveAutomaton m = build(duplicates(DEFAULT_LENGTH));
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(DEFAULT_LENGTH);
+			out.writeInt(m.next.length);
+			for (int n : m.next) out.writeInt(n);
+		}
+		System.out.println(m.states() + " states learned in " + (System.nanoTime() - start) / 1000000 + "ms, written to " + file);
+	}
+
+	public int start() {
+		return 0;
+	}
+
+	public int next(int state, Action action) {
+		return next[state * 4 + code(action)];
+	}
+
+	/**
+	 * @return the number of states of the machine
+	 */
+	int states() {
+		return next.length / 4;
+	}
+
+	/**
+	 * @param action one of the moves of NPuzzleState
+	 * @return the code of the move (its index in NodeArena.ACTIONS)
+	 */
+	static int code(Action action) {
+		for (int i = 0; i < NodeArena.ACTIONS.length; i++) {
+			if (NodeArena.ACTIONS[i] == action) return i;
+		}
+		throw new IllegalArgumentException("Not a move: " + action);
+	}
+
+	/**
+	 * Find the duplicate move sequences up to a length.
+	 * @param maxLength the longest sequence tried
+	 * @return the duplicate sequences as move codes; none of them contains another
+	 */
+	static List<int[]> duplicates(int maxLength) {
+		return new Learner(maxLength).run();
+	}
+
+	/**
+	 * The search over move sequences on an unbounded board.
+	 */
+	private static final class Learner {
+		final int maxLength, width, cells;
+		final int[] board;
+		final long[] zobrist;
+		final int[] path;
+		/** The bounding box of the space at each depth: rows min, max, columns min, max */
+		final int[][] box;
+		/** The boxes of the sequences kept so far, by the board they lead to */
+		final Map<Long, List<int[]>> kept = new HashMap<Long, List<int[]>>();
+		final Set<Long> duplicate = new HashSet<Long>();
+		final List<int[]> found = new ArrayList<int[]>();
+		int blank;
+		long hash;
+
+		Learner(int maxLength) {
+			this.maxLength = maxLength;
+			this.width = 2 * maxLength + 1;
+			this.cells = width * width;
+			this.board = new int[cells];
+			for (int i = 0; i < cells; i++) board[i] = i;	// tile 0 is the space
+			this.zobrist = new long[cells * cells];
+			Random random = new Random(cells);
+			for (int i = 0; i < zobrist.length; i++) zobrist[i] = random.nextLong();
+			this.path = new int[maxLength];
+			this.box = new int[maxLength + 1][];
+		}
+
+		List<int[]> run() {
+			// Start with the space in the middle //
+			int middle = maxLength * width + maxLength;
+			board[0] = board[middle];
+			board[middle] = 0;
+			blank = middle;
+			hash = 0;
+			for (int i = 0; i < cells; i++) hash ^= zobrist[i * cells + board[i]];
+			box[0] = new int[] { 0, 0, 0, 0 };
+			keep(box[0]);
+
+			for (int length = 1; length <= maxLength; length++) search(0, length);
+			return found;
+		}
+
+		/**
+		 * Try every sequence of exactly a length that has no duplicate in it.
+		 * @param depth the number of moves made so far
+		 * @param length the length of the sequences to record
+		 */
+		private void search(int depth, int length) {
+			if (depth == length) {
+				record(length);
+				return;
+			}
+			int[] b = box[depth];
+			for (int m = 0; m < 4; m++) {
+				path[depth] = m;
+				if (endsInDuplicate(depth + 1)) continue;
+
+				int to = blank + DR[m] * width + DC[m];
+				int tile = board[to];
+				hash ^= zobrist[blank * cells] ^ zobrist[to * cells + tile] ^ zobrist[blank * cells + tile] ^ zobrist[to * cells];
+				board[blank] = tile;
+				board[to] = 0;
+				int from = blank;
+				blank = to;
+
+				int row = blank / width - maxLength, col = blank % width - maxLength;	// relative to the start
+				box[depth + 1] = new int[] { Math.min(b[0], row), Math.max(b[1], row), Math.min(b[2], col), Math.max(b[3], col) };
+				search(depth + 1, length);
+
+				blank = from;
+				board[to] = tile;
+				board[blank] = 0;
+				hash ^= zobrist[blank * cells] ^ zobrist[to * cells + tile] ^ zobrist[blank * cells + tile] ^ zobrist[to * cells];
+			}
+		}
+
+		/**
+		 * @param length the number of moves on the path
+		 * @return true if the path ends in a known duplicate
+		 */
+		private boolean endsInDuplicate(int length) {
+			long key = 0;
+			for (int i = length - 1, n = 1; i >= 0; i--, n++) {
+				key |= (long) path[i] << (2 * (n - 1));
+				if (n >= 2 && duplicate.contains(key(key, n))) return true;
+			}
+			return false;
+		}
+
+		private static long key(long moves, int length) {
+			return (long) length << 48 | moves;
+		}
+
+		private void record(int length) {
+			List<int[]> boxes = kept.get(hash);
+			int[] b = box[length];
+			if (boxes != null) {
+				for (int[] k : boxes) {
+					if (k[0] >= b[0] && k[1] <= b[1] && k[2] >= b[2] && k[3] <= b[3]) {
+						// An earlier sequence reaches the same board without leaving this one's box //
+						long moves = 0;
+						for (int i = 0; i < length; i++) moves |= (long) path[i] << (2 * (length - 1 - i));
+						duplicate.add(key(moves, length));
+						found.add(Arrays.copyOf(path, length));
+						return;
+					}
+				}
+			}
+			keep(b);
+		}
+
+		private void keep(int[] b) {
+			List<int[]> boxes = kept.get(hash);
+			if (boxes == null) {
+				boxes = new ArrayList<int[]>(1);
+				kept.put(hash, boxes);
+			}
+			boxes.add(b);
+		}
+	}
+
+	/**
+	 * Compile duplicate sequences into an automaton that rejects the last move of any of them.
+	 * @param duplicates the sequences, as move codes
+	 * @return the automaton
+	 */
+	static MoveAutomaton build(List<int[]> duplicates) {
+		// Trie of the sequences //
+		List<int[]> go = new ArrayList<int[]>();
+		List<Boolean> terminal = new ArrayList<Boolean>();
+		go.add(new int[] { -1, -1, -1, -1 });
+		terminal.add(false);
+		for (int[] d : duplicates) {
+			int s = 0;
+			for (int m : d) {
+				if (go.get(s)[m] < 0) {
+					go.get(s)[m] = go.size();
+					go.add(new int[] { -1, -1, -1, -1 });
+					terminal.add(false);
+				}
+				s = go.get(s)[m];
+			}
+			terminal.set(s, true);
+		}
+
+		// Failure links, breadth first, turning the trie into a complete machine //
+		int n = go.size();
+		int[] fail = new int[n];
+		boolean[] end = new boolean[n];
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		for (int m = 0; m < 4; m++) {
+			int s = go.get(0)[m];
+			if (s < 0) {
+				go.get(0)[m] = 0;
+			} else {
+				fail[s] = 0;
+				queue.add(s);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int r = queue.poll();
+			end[r] = terminal.get(r) || end[fail[r]];
+			for (int m = 0; m < 4; m++) {
+				int s = go.get(r)[m];
+				if (s < 0) {
+					go.get(r)[m] = go.get(fail[r])[m];
+				} else {
+					fail[s] = go.get(fail[r])[m];
+					queue.add(s);
+				}
+			}
+		}
+
+		int[] next = new int[n * 4];
+		for (int s = 0; s < n; s++) {
+			for (int m = 0; m < 4; m++) {
+				int t = go.get(s)[m];
+				next[s * 4 + m] = end[t] ? -1 : t;
+			}
+		}
+		return new MoveAutomaton(next);
+	}
+}
@@ -0,0 +1,91 @@
+package search.npuzzle;
+
+import search.Heuristic;
+import search.State;
+
+/**
+ * The heuristics of the n-puzzle beyond those of the State interface. They are numbered on from
+ * them (5 to 7), so numbered and parse read the same numbers and specs as before, e.g. "max(6,5)".
+ * Each one reads tables built once per board size on first use, and is safe to share between threads.
+ */
+public enum NPuzzleHeuristic implements Heuristic {
+	/** Heuristic 5: the sum of the default disjoint pattern databases of the board size */
+	PATTERN_DATABASE(5) {
+		public int estimate(State s) {
+			NPuzzleState b = (NPuzzleState) s;
+			return AdditivePatternDatabase.forSize(b.squareSize).estimate(b);
+		}
+	},
+	/** Heuristic 6: the Manhattan distance plus the linear conflicts of every row and column */
+	LINEAR_CONFLICT(6) {
+		public int estimate(State s) {
+			NPuzzleState b = (NPuzzleState) s;
+			return b.getH2() + LinearConflict.forSize(b.squareSize).estimate(b);
+		}
+	},
+	/**
+	 * Heuristic 7: the vertical plus the horizontal walking distance. Boards larger than 4x4 have no
+	 * table and use heuristic 6 instead.
+	 */
+	WALKING_DISTANCE(7) {
+		public int estimate(State s) {
+			NPuzzleState b = (NPuzzleState) s;
+			if (b.squareSize > WalkingDistance.MAX_SIZE) return LINEAR_CONFLICT.estimate(b);
+			return WalkingDistance.forSize(b.squareSize).estimate(b);
+		}
+	};
+
+	private final int number;
+
+	NPuzzleHeuristic(int number) {
+		this.number = number;
+	}
+
+	/**
+	 * @return the number of the heuristic
+	 */
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return the number as Heuristic.parse reads it, e.g. "H6"
+	 */
+	public String toString() {
+		return "H" + number;
+	}
+
+	/**
+	 * @return heuristics 1 to 7, indexed from 0
+	 */
+	private static Heuristic[] all() {
+		Heuristic.Numbered[] state = Heuristic.Numbered.values();
+		NPuzzleHeuristic[] puzzle = values();
+		Heuristic[] all = new Heuristic[state.length + puzzle.length];
+		System.arraycopy(state, 0, all, 0, state.length);
+		System.arraycopy(puzzle, 0, all, state.length, puzzle.length);
+		return all;
+	}
+
+	/**
+	 * @param number 1 to 4 for a heuristic of the State interface, 5 to 7 for one of these
+	 * @return the heuristic
+	 * @throws IllegalArgumentException if there is no heuristic of that number
+	 */
+	public static Heuristic numbered(int number) {
+		Heuristic[] all = all();
+		if (number < 1 || number > all.length)
+			throw new IllegalArgumentException("Unknown heuristic " + number);
+		return all[number - 1];
+	}
+
+	/**
+	 * Read a heuristic from a command line, as Heuristic.parse does, numbering these 5 to 7.
+	 * @param spec the heuristic, e.g. "6" or "max(6,5)"
+	 * @return the heuristic
+	 * @throws IllegalArgumentException if the spec is not understood
+	 */
+	public static Heuristic parse(String spec) {
+		return Heuristic.parse(spec, all());
+	}
+}
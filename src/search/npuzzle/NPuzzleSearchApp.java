@@ -1,10 +1,20 @@
 package search.npuzzle;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.lang.Math;
 
 import search.Action;
+import search.ActionStatePair;
+import search.AnytimeAStar;
+import search.BidirectionalSearch;
 import search.Node;
+import search.SearchProfile;
+import search.SearchStats;
+import search.State;
 
 /**
  * @author Josh King (42344825)
@@ -13,28 +23,28 @@ import search.Node;
 
 public class NPuzzleSearchApp {
 
+    /** Whether the A* solvers share a SolutionCache; off, so every heuristic searches from scratch */
+    private static boolean cached = false;
+
     /**
      * Test program for search procedures
-     * @param args none interpreted as yet
+     * @param args -cache to let the A* solvers share the distances of solved boards (the later
+     * heuristics then answer from the cache, so their statistics are no longer comparable)
      */
     public static void main(String[] args) {
+        for (String a : args) {
+            if (a.equals("-cache")) cached = true;
+        }
         // create an initial fifteen puzzle state by first generating the goal config
         //PuzzleState myState=new PuzzleState();
 
     	// a size of 4 gives the 15 puzzle
     	int sizeOfPuzzle = 6;
     	
-        // Create a random puzzle and memorise the puzzle state.
-        NPuzzleState myState= randomPuzzle(sizeOfPuzzle, 10);
-        
         int solutionDepth = 8;
         
-        Action[] actionstest = solveH3A(new NPuzzleState(myState));
-        while (actionstest.length != solutionDepth) {
-        	myState= randomPuzzle(sizeOfPuzzle, solutionDepth);
-        	actionstest = solveH3A(new NPuzzleState(myState));
-        }
-        System.out.println("----------------------------------------");
+        // Create a random puzzle with an optimal solution of exactly solutionDepth moves.
+        NPuzzleState myState= new InstanceGenerator(sizeOfPuzzle, System.nanoTime()).atDepth(solutionDepth);
         
 
         // or "shuffle" the tiles around manually a little bit...
@@ -59,6 +69,10 @@ public class NPuzzleSearchApp {
         Action[] actions3G = solveH3G(new NPuzzleState(myState));
         Action[] actions4A = solveH4A(new NPuzzleState(myState));
         Action[] actions4G = solveH4G(new NPuzzleState(myState));
+        Action[] actions6A = solveH6A(new NPuzzleState(myState));
+        Action[] actions7A = solveH7A(new NPuzzleState(myState));
+        Action[] actionsW = solveWeighted(new NPuzzleState(myState), 2);
+        Action[] actionsARA = solveAnytime(new NPuzzleState(myState), 3, 1000);
 
         // List the initial state and results of actions performed.
         /*System.out.println("Initial state:");
@@ -129,6 +143,47 @@ public class NPuzzleSearchApp {
         
     }
 
+    /**
+     * @return statistics for a search, profiled if the system property "npuzzle.profile" names
+     * a directory to write profiles to
+     */
+    static SearchStats newStats() {
+        SearchStats stats = new SearchStats();
+        if (System.getProperty("npuzzle.profile") != null) stats.setProfile(new SearchProfile());
+        return stats;
+    }
+
+    /**
+     * Print the statistics of a search, and write its profile (if it has one) as JSON and CSV files
+     * named after the search to the directory of the system property "npuzzle.profile".
+     * @param name the name of the search
+     * @param stats its statistics
+     */
+    static void report(String name, SearchStats stats) {
+        System.out.println(name + "\t" + stats);
+        SearchProfile profile = stats.getProfile();
+        if (profile == null) return;
+        System.out.println(name + " profile\t" + profile);
+        File dir = new File(System.getProperty("npuzzle.profile"));
+        String prefix = name.toLowerCase().replaceAll("[^a-z0-9.]+", "-").replaceAll("^-|-$", "");
+        try {
+            profile.writeCsv(dir, prefix);
+            try (Writer out = new FileWriter(new File(dir, prefix + ".json"))) {
+                profile.writeJson(out);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot write the profile of " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param state initial puzzle state
+     * @return the cache of its board size if the solvers are cached, null otherwise
+     */
+    static SolutionCache oracle(NPuzzleState state) {
+        return cached ? SolutionCache.forSize(state.squareSize) : null;
+    }
+
 	/**
      * Example solve
      * @param state initial puzzle state
@@ -149,7 +204,9 @@ public class NPuzzleSearchApp {
      */
     public static Action[] solveH1G(NPuzzleState state){
         // now perform the search from the "shuffled" initial state (fringe is empty)
-        Node goal = Node.myHG(state, 1);
+        SearchStats stats = newStats();
+        Node goal = Node.myHG(state, 1, stats);
+        report("H1 Greedy", stats);
         //Node goal=Node.breadthFirstSearch(state, new ArrayList());
         Action[] actions=goal.getActions();
         
@@ -164,7 +221,9 @@ public class NPuzzleSearchApp {
      */
     public static Action[] solveH1A(NPuzzleState state){
         // now perform the search from the "shuffled" initial state (fringe is empty)
-        Node goal = Node.myHA(state, 1);
+        SearchStats stats = newStats();
+        Node goal = Node.myHA(state, 1, stats, oracle(state));
+        report("H1 A*", stats);
         //Node goal=Node.breadthFirstSearch(state, new ArrayList());
         Action[] actions=goal.getActions();
         
@@ -179,7 +238,9 @@ public class NPuzzleSearchApp {
      */
     public static Action[] solveH2G(NPuzzleState state){
         // now perform the search from the "shuffled" initial state (fringe is empty)
-        Node goal = Node.myHG(state, 2);
+        SearchStats stats = newStats();
+        Node goal = Node.myHG(state, 2, stats);
+        report("H2 Greedy", stats);
         //Node goal=Node.breadthFirstSearch(state, new ArrayList());
         Action[] actions=goal.getActions();
         
@@ -194,7 +255,9 @@ public class NPuzzleSearchApp {
      */
     public static Action[] solveH2A(NPuzzleState state){
         // now perform the search from the "shuffled" initial state (fringe is empty)
-        Node goal = Node.myHA(state, 2);
+        SearchStats stats = newStats();
+        Node goal = Node.myHA(state, 2, stats, oracle(state));
+        report("H2 A*", stats);
         //Node goal=Node.breadthFirstSearch(state, new ArrayList());
         Action[] actions=goal.getActions();
         
@@ -209,7 +272,9 @@ public class NPuzzleSearchApp {
     */
    public static Action[] solveH3G(NPuzzleState state){
        // now perform the search from the "shuffled" initial state (fringe is empty)
-       Node goal = Node.myHG(state, 3);
+       SearchStats stats = newStats();
+       Node goal = Node.myHG(state, 3, stats);
+       report("H3 Greedy", stats);
        //Node goal=Node.breadthFirstSearch(state, new ArrayList());
        Action[] actions=goal.getActions();
        
@@ -224,7 +289,9 @@ public class NPuzzleSearchApp {
     */
    public static Action[] solveH3A(NPuzzleState state){
        // now perform the search from the "shuffled" initial state (fringe is empty)
-       Node goal = Node.myHA(state, 3);
+       SearchStats stats = newStats();
+       Node goal = Node.myHA(state, 3, stats, oracle(state));
+       report("H3 A*", stats);
        //Node goal=Node.breadthFirstSearch(state, new ArrayList());
        Action[] actions=goal.getActions();
        
@@ -239,7 +306,9 @@ public class NPuzzleSearchApp {
     */
    public static Action[] solveH4G(NPuzzleState state){
        // now perform the search from the "shuffled" initial state (fringe is empty)
-       Node goal = Node.myHG(state, 4);
+       SearchStats stats = newStats();
+       Node goal = Node.myHG(state, 4, stats);
+       report("H4 Greedy", stats);
        //Node goal=Node.breadthFirstSearch(state, new ArrayList());
        Action[] actions=goal.getActions();
        
@@ -254,7 +323,9 @@ public class NPuzzleSearchApp {
     */
    public static Action[] solveH4A(NPuzzleState state){
        // now perform the search from the "shuffled" initial state (fringe is empty)
-       Node goal = Node.myHA(state, 4);
+       SearchStats stats = newStats();
+       Node goal = Node.myHA(state, 4, stats, oracle(state));
+       report("H4 A*", stats);
        //Node goal=Node.breadthFirstSearch(state, new ArrayList());
        Action[] actions=goal.getActions();
        
@@ -262,33 +333,140 @@ public class NPuzzleSearchApp {
    }
 
     /**
-     * Generate a solvable random puzzle.
+     * Solve the puzzle with A* and the Manhattan distance plus linear conflicts (heuristic 6).
+     * @param state initial puzzle state
+     */
+    public static Action[] solveH6A(NPuzzleState state){
+        SearchStats stats = newStats();
+        Node goal = Node.myHA(state, NPuzzleHeuristic.LINEAR_CONFLICT, stats, oracle(state), true);
+        report("H6 A*", stats);
+        Action[] actions=goal.getActions();
+        
+        return actions;
+    }
+
+    /**
+     * Solve the puzzle with greedy search and the Manhattan distance plus linear conflicts (heuristic 6).
+     * @param state initial puzzle state
+     */
+    public static Action[] solveH6G(NPuzzleState state){
+        SearchStats stats = newStats();
+        Node goal = Node.myHG(state, NPuzzleHeuristic.LINEAR_CONFLICT, stats);
+        report("H6 Greedy", stats);
+        Action[] actions=goal.getActions();
+        
+        return actions;
+    }
+
+    /**
+     * Solve the puzzle with A* and the walking distance (heuristic 7).
+     * @param state initial puzzle state
+     */
+    public static Action[] solveH7A(NPuzzleState state){
+        SearchStats stats = newStats();
+        Node goal = Node.myHA(state, NPuzzleHeuristic.WALKING_DISTANCE, stats, oracle(state), true);
+        report("H7 A*", stats);
+        Action[] actions=goal.getActions();
+        
+        return actions;
+    }
+
+    /**
+     * Solve the puzzle with greedy search and the walking distance (heuristic 7).
+     * @param state initial puzzle state
+     */
+    public static Action[] solveH7G(NPuzzleState state){
+        SearchStats stats = newStats();
+        Node goal = Node.myHG(state, NPuzzleHeuristic.WALKING_DISTANCE, stats);
+        report("H7 Greedy", stats);
+        Action[] actions=goal.getActions();
+        
+        return actions;
+    }
+
+    /**
+     * Solve the puzzle with weighted A* and heuristic 6. The solution costs at most weight times the optimum.
+     * @param state initial puzzle state
+     * @param weight the weight of the heuristic, at least 1
+     */
+    public static Action[] solveWeighted(NPuzzleState state, double weight){
+        SearchStats stats = newStats();
+        Node goal = Node.myWA(state, NPuzzleHeuristic.LINEAR_CONFLICT, weight, stats);
+        report("Weighted A* (w=" + weight + ")", stats);
+        Action[] actions=goal.getActions();
+        
+        return actions;
+    }
+
+    /**
+     * Solve the puzzle with anytime repairing A* and heuristic 6, printing every improved solution
+     * with its bound, and return the best one found in time.
+     * @param state initial puzzle state
+     * @param weight the weight of the first pass, at least 1
+     * @param millis the time allowed
+     * @return the actions of the best solution, or null if none was found in time
+     */
+    public static Action[] solveAnytime(NPuzzleState state, double weight, long millis){
+        SearchStats stats = newStats();
+        AnytimeAStar.Solution best = Node.myARA(state, NPuzzleHeuristic.LINEAR_CONFLICT, weight, 0.5, millis, new AnytimeAStar.Listener() {
+            public void improved(AnytimeAStar.Solution solution) {
+                System.out.println("ARA* solution\t" + solution);
+            }
+        }, stats);
+        report("ARA* (w=" + weight + ")", stats);
+        if (best == null) return null;
+        Action[] actions=best.getGoal().getActions();
+        
+        return actions;
+    }
+
+    /**
+     * Solve the puzzle with bidirectional breadth-first search.
+     * @param state initial puzzle state
+     * @param parallel true to search backwards from the goal on a second thread
+     */
+    public static Action[] solveBidirectional(NPuzzleState state, boolean parallel){
+        SearchStats stats = newStats();
+        Node goal = BidirectionalSearch.breadthFirst(state, new NPuzzleState(state.squareSize), parallel, stats);
+        report("Bidirectional BFS", stats);
+        Action[] actions=goal.getActions();
+        
+        return actions;
+    }
+
+    /**
+     * Solve the puzzle with bidirectional A*, guided in both directions by the Manhattan distance
+     * to the state the other direction started from.
+     * @param state initial puzzle state
+     * @param parallel true to search backwards from the goal on a second thread
+     */
+    public static Action[] solveBidirectionalA(NPuzzleState state, boolean parallel){
+        SearchStats stats = newStats();
+        Node goal = BidirectionalSearch.frontToEnd(state, new NPuzzleState(state.squareSize), MANHATTAN, parallel, stats);
+        report("Bidirectional A*", stats);
+        Action[] actions=goal.getActions();
+        
+        return actions;
+    }
+
+    /** The Manhattan distance between two boards, for bidirectional search */
+    public static final BidirectionalSearch.Distance MANHATTAN = new BidirectionalSearch.Distance() {
+        public int estimate(State from, State to) {
+            return ((NPuzzleState) from).manhattan((NPuzzleState) to);
+        }
+    };
+
+    /**
+     * Generate a solvable random puzzle. Its optimal solution may be much shorter than the number
+     * of shuffles; use InstanceGenerator for puzzles of an exact solution depth.
      * @param maxShuffles the number of shuffles to be performed
      */
     public static NPuzzleState randomPuzzle(int sizeOfSquare, int maxShuffles) {
         NPuzzleState myState=new NPuzzleState(sizeOfSquare);
-        int totalMoves = 0;
-        while(totalMoves < maxShuffles){
-            double r = Math.random();
-            try {
-                if(r < 0.25){
-                    NPuzzleState.performAction(myState, NPuzzleState.MOVE_LEFT);
-                    //System.out.println("left");
-                } else if (r < 0.5) {
-                    NPuzzleState.performAction(myState, NPuzzleState.MOVE_RIGHT);
-                    //System.out.println("right");
-                } else if (r < 0.75) {
-                    NPuzzleState.performAction(myState, NPuzzleState.MOVE_UP);
-                    //System.out.println("up");
-                } else {
-                    NPuzzleState.performAction(myState, NPuzzleState.MOVE_DOWN);
-                    //System.out.println("down");
-                }
-                totalMoves++;
-            }
-            catch (RuntimeException e){
-                ; // illegal move
-            }
+        for (int totalMoves=0; totalMoves<maxShuffles; totalMoves++) {
+            // pick one of the legal moves, so no move is ever rejected
+            ActionStatePair[] moves=myState.successor();
+            myState=(NPuzzleState) moves[(int) (Math.random()*moves.length)].getState();
         }
         return myState;
     }
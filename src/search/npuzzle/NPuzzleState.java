@@ -7,22 +7,40 @@ package search.npuzzle;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
 import search.Action;
 import search.ActionStatePair;
+import search.Heuristic;
+import search.MovePruner;
 import search.State;
 
 /**
  * The State that implements the N-Puzzle.
+ * Boards up to 4x4 are packed into a single long (4 bits per cell, cell 0 in the lowest bits),
+ * larger boards are stored as one byte per cell.
  */
 public final class NPuzzleState implements State {
 
-    /** The board configuration of this state */
-    public final int[][] tiles;
+    /** The board configuration of this state, for boards up to 4x4 */
+    private long packed;
+    /** The board configuration of this state, for boards larger than 4x4 (null otherwise) */
+    private final byte[] cells;
+    /** The cell index (row * squareSize + column) of the empty space */
+    private int blank;
     /** The size of the board */
     public final int squareSize;
+    /** The Zobrist key of the board, kept up to date by every move */
+    private long key;
+    /** The tables shared by all boards of this size */
+    private final BoardTables tables;
+    /** The number of misplaced tiles, kept up to date by every move */
+    private int h1;
+    /** The Manhattan distance of all tiles, kept up to date by every move */
+    private int h2;
+    /** The number of tiles out of row plus out of column, kept up to date by every move */
+    private int h4;
     /** The action "to slide the empty space to the left" */
     public static Action MOVE_LEFT  = new Action("LEFT");
     /** The action "to slide the empty space to the right" */
@@ -40,14 +58,7 @@ public final class NPuzzleState implements State {
      * If no puzzle size is specified, the 15 puzzle is created 
      */
     public NPuzzleState() {
-    	this.squareSize = 4;
-        this.tiles=new int[4][4];
-        for (int i=0; i<4; i++) {
-            for (int j=0; j<4; j++) {
-                this.tiles[i][j]=i*4+j+1;
-            }
-        }
-        tiles[3][3]=0; // empty
+    	this(4);
     }
     
     /**
@@ -58,13 +69,11 @@ public final class NPuzzleState implements State {
      */
     public NPuzzleState(int puzzleSize) {
     	this.squareSize = puzzleSize;
-    	this.tiles=new int[puzzleSize][puzzleSize];
-    	for (int i=0; i<puzzleSize; i++) {
-    		for (int j=0; j<puzzleSize; j++) {
-    			this.tiles[i][j]=i*puzzleSize+j+1;
-    		}
-    	}
-    	tiles[puzzleSize-1][puzzleSize-1]=0;
+    	this.tables = BoardTables.forSize(puzzleSize);
+    	this.packed = tables.goalPacked;
+    	this.cells = tables.packed ? null : tables.goalCells.clone();
+    	this.blank = tables.cells - 1;
+    	evaluate();
     }
     
     /**
@@ -73,12 +82,14 @@ public final class NPuzzleState implements State {
      */
     public NPuzzleState(NPuzzleState state) {
     	this.squareSize=state.squareSize;
-        this.tiles=new int[this.squareSize][this.squareSize];
-        for (int i=0; i<this.squareSize; i++) {
-            for (int j=0; j<this.squareSize; j++) {
-                this.tiles[i][j]=state.tiles[i][j];
-            }
-        }
+    	this.tables=state.tables;
+    	this.packed=state.packed;
+    	this.cells=state.cells == null ? null : state.cells.clone();
+    	this.blank=state.blank;
+        this.key=state.key;
+        this.h1=state.h1;
+        this.h2=state.h2;
+        this.h4=state.h4;
     }
 
     /**
@@ -87,12 +98,16 @@ public final class NPuzzleState implements State {
      */
     public NPuzzleState(int[][] state) {
     	this.squareSize=state.length;
-        this.tiles=new int[this.squareSize][this.squareSize];
+    	this.tables=BoardTables.forSize(squareSize);
+    	this.cells=tables.packed ? null : new byte[tables.cells];
         for (int i=0; i<this.squareSize; i++) {
             for (int j=0; j<this.squareSize; j++) {
-                this.tiles[i][j]=state[i][j];
+                setTile(i*squareSize+j, state[i][j]);
+                if (state[i][j]==0)
+                	blank=i*squareSize+j;
             }
         }
+        evaluate();
     }
 
     /**
@@ -106,33 +121,217 @@ public final class NPuzzleState implements State {
         performAction(this,action);
     }
     
+    /**
+     * Create a board of up to 4x4 from its packed form.
+     * @param squareSize the size of the board
+     * @param packed the tiles at 4 bits per cell, the first cell in the lowest bits
+     * @throws IllegalArgumentException if boards of this size are not packed
+     */
+    NPuzzleState(int squareSize, long packed) {
+    	this.squareSize = squareSize;
+    	this.tables = BoardTables.forSize(squareSize);
+    	if (!tables.packed)
+    		throw new IllegalArgumentException("Boards of size " + squareSize + " are not packed");
+    	this.cells = null;
+    	load(packed);
+    }
+    
+    /**
+     * Replace the board by another packed board of the same size, recomputing the key and heuristics.
+     * @param packed the tiles at 4 bits per cell
+     */
+    void load(long packed) {
+    	this.packed = packed;
+    	for (int i=0; i<tables.cells; i++) {
+    		if (tile(i) == 0) blank = i;
+    	}
+    	evaluate();
+    }
+    
+    /**
+     * Copy the board of another packed state of the same size into this one.
+     * @param state the state to copy
+     */
+    void copyFrom(NPuzzleState state) {
+    	this.packed=state.packed;
+    	this.blank=state.blank;
+    	this.key=state.key;
+    	this.h1=state.h1;
+    	this.h2=state.h2;
+    	this.h4=state.h4;
+    }
+    
+    /**
+     * @return the tiles at 4 bits per cell (boards up to 4x4 only)
+     */
+    long packed() {
+    	return packed;
+    }
+    
+    /**
+     * @return the cell of the empty space
+     */
+    int blank() {
+    	return blank;
+    }
+    
+    /**
+     * @param cell the index of the cell (row * squareSize + column)
+     * @return the tile in that cell (0 for the empty space)
+     */
+    int tile(int cell) {
+    	if (cells == null)
+    		return (int) (packed >>> (cell << 2)) & 0xF;
+    	return cells[cell] & 0xFF;
+    }
+
+    private void setTile(int cell, int tile) {
+    	if (cells == null) {
+    		int shift = cell << 2;
+    		packed = (packed & ~(0xFL << shift)) | ((long) tile << shift);
+    	} else {
+    		cells[cell] = (byte) tile;
+    	}
+    }
+
+    /**
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the tile at that position (0 for the empty space)
+     */
+    public int getTile(int row, int col) {
+    	return tile(row*squareSize+col);
+    }
+
+    /**
+     * @return a copy of the board configuration as rows of tiles
+     */
+    public int[][] toArray() {
+    	int[][] board = new int[squareSize][squareSize];
+    	for (int r=0; r<squareSize; r++) {
+    		for (int c=0; c<squareSize; c++) {
+    			board[r][c] = tile(r*squareSize+c);
+    		}
+    	}
+    	return board;
+    }
+
+    /**
+     * Compute the Zobrist key and the incremental heuristics of the board from scratch.
+     */
+    private void evaluate() {
+    	key = 0;
+    	if (cells != null) {
+    		// Larger boards leave the heuristics to the (vectorised) kernels //
+    		for (int i=0; i<tables.cells; i++) key ^= tables.zobrist(i, cells[i] & 0xFF);
+    		h1 = BoardKernels.INSTANCE.misplaced(cells, tables);
+    		h2 = BoardKernels.INSTANCE.manhattan(cells, tables);
+    		h4 = BoardKernels.INSTANCE.rowColumn(cells, tables);
+    		return;
+    	}
+    	h1 = h2 = h4 = 0;
+    	for (int i=0; i<tables.cells; i++) {
+    		int t = tile(i);
+    		key ^= tables.zobrist(i, t);
+    		if (t == 0) continue;		// Do not include space
+    		
+    		int dr = Math.abs(tables.rowOf[i] - tables.goalRow[t]);
+    		int dc = Math.abs(tables.colOf[i] - tables.goalCol[t]);
+    		if (dr + dc != 0) h1++;
+    		h2 += dr + dc;
+    		if (dr != 0) h4++;
+    		if (dc != 0) h4++;
+    	}
+    }
+    
+    /**
+     * Slide the tile at the given cell into the empty space, updating the Zobrist key
+     * and the heuristics for the single tile that moved.
+     * @param from the cell of the tile that moves, must be next to the space
+     */
+    void slide(int from) {
+    	int tile = tile(from);
+    	if (cells == null) {
+    		// the space holds 0, so the tile can be xor'ed into both cells at once //
+    		packed ^= ((long) tile << (from << 2)) | ((long) tile << (blank << 2));
+    	} else {
+    		cells[blank] = (byte) tile;	// fill empty spot with moved tile
+    		cells[from] = 0;			// new empty spot
+    	}
+    	key ^= tables.zobrist(from, tile) ^ tables.zobrist(blank, tile);
+    	
+    	// Only one of these differs from zero: the move is either vertical or horizontal //
+    	int gr = tables.goalRow[tile], gc = tables.goalCol[tile];
+    	int drOld = Math.abs(tables.rowOf[from] - gr), drNew = Math.abs(tables.rowOf[blank] - gr);
+    	int dcOld = Math.abs(tables.colOf[from] - gc), dcNew = Math.abs(tables.colOf[blank] - gc);
+    	h2 += drNew - drOld + dcNew - dcOld;
+    	h4 += (drNew != 0 ? 1 : 0) - (drOld != 0 ? 1 : 0) + (dcNew != 0 ? 1 : 0) - (dcOld != 0 ? 1 : 0);
+    	if (from == tile - 1) h1++;			// tile leaves its goal cell
+    	else if (blank == tile - 1) h1--;	// tile arrives at its goal cell
+    	blank = from;
+    }
+
+    /**
+     * Determine which cell the empty space moves into for an action.
+     * @param action the action which is taken
+     * @return the cell swapped with the space, or -1 if the action is illegal
+     */
+    int target(Action action) {
+    	int row = tables.rowOf[blank], col = tables.colOf[blank];
+    	if (action==MOVE_UP) return row!=0 ? blank-squareSize : -1;
+    	if (action==MOVE_DOWN) return row!=squareSize-1 ? blank+squareSize : -1;
+    	if (action==MOVE_LEFT) return col!=0 ? blank-1 : -1;
+    	if (action==MOVE_RIGHT) return col!=squareSize-1 ? blank+1 : -1;
+    	return -1;
+    }
+    
+    /**
+     * @return true, as apply and undo slide the tiles of this board
+     */
+    public boolean isMutable() {
+        return true;
+    }
+    
+    /**
+     * @return the four moves of the space, in the order in which they are tested
+     */
+    public Action[] actions() {
+        return actionSequence.clone();
+    }
+    
+    /**
+     * Perform an action on this state, if it is legal.
+     * @param action the action which is taken
+     * @return true if the action was taken, false if it would move the space off the board
+     */
+    public boolean apply(Action action) {
+        int from = target(action);
+        if (from < 0) return false;
+        slide(from);
+        return true;
+    }
+    
+    /**
+     * Undo an action taken by apply, by moving the space back.
+     * @param action the action to undo
+     * @throws RuntimeException if the action cannot have been the last one taken
+     */
+    public void undo(Action action) {
+        performAction(this, inverse(action));
+    }
+    
+    /**
+     * Perform an action on the supplied state (the state is changed).
+     * @param origin the state to change
+     * @param action the action which is taken
+     * @throws RuntimeException if the action is invalid
+     */
     public static void performAction(NPuzzleState origin, Action action) {
-        int rowEmpty=0, colEmpty=0;
-        for (int i=0; i<origin.squareSize; i++) {
-            for (int j=0; j<origin.squareSize; j++) {
-                if (origin.tiles[i][j]==0) {
-                    rowEmpty=i;
-                    colEmpty=j;
-                    break;
-                }
-            }
-        }
         // Check which action is taken, check if it is "valid", if so carry out the action (change the board)
-        if (action==MOVE_UP && rowEmpty!=0) { 
-            origin.tiles[rowEmpty][colEmpty]=origin.tiles[rowEmpty-1][colEmpty]; // fill empty spot with moved tile
-            origin.tiles[rowEmpty-1][colEmpty]=0; // new empty spot
-        } else if (action==MOVE_DOWN && rowEmpty!=(origin.squareSize-1)) {
-            origin.tiles[rowEmpty][colEmpty]=origin.tiles[rowEmpty+1][colEmpty];
-            origin.tiles[rowEmpty+1][colEmpty]=0;
-        } else if (action==MOVE_LEFT && colEmpty!=0) {
-            origin.tiles[rowEmpty][colEmpty]=origin.tiles[rowEmpty][colEmpty-1];
-            origin.tiles[rowEmpty][colEmpty-1]=0;
-        } else if (action==MOVE_RIGHT && colEmpty!=(origin.squareSize-1)) {
-            origin.tiles[rowEmpty][colEmpty]=origin.tiles[rowEmpty][colEmpty+1];
-            origin.tiles[rowEmpty][colEmpty+1]=0;
-        } else {
+        int from = origin.target(action);
+        if (from < 0)
             throw new RuntimeException("Illegal move"); // illegal move
-        }
+        origin.slide(from);
     }
     
     /**
@@ -145,16 +344,9 @@ public final class NPuzzleState implements State {
      * @return true if the state is a goal, false otherwise
      */
     public boolean goal() {
-        for (int i=0; i<squareSize; i++) {
-            for (int j=0; j<squareSize; j++) {
-                if (tiles[i][j]!=i*squareSize+j+1) {
-                    if (i==(squareSize-1) && j==(squareSize-1))
-                        return true;
-                    return false;
-                }
-            }
-        }
-        return true;
+        if (cells == null)
+            return packed == tables.goalPacked;
+        return blank == tables.cells - 1 && BoardKernels.INSTANCE.equal(cells, tables.goalCells);
     }
 
     /**
@@ -162,22 +354,143 @@ public final class NPuzzleState implements State {
      * @return an array of all valid Action State pairs
      */
     public ActionStatePair[] successor() {
-        //ArrayList list=new ArrayList<ActionStatePair>();
-        List<ActionStatePair> list=new ArrayList<ActionStatePair>();
+        ActionStatePair[] list=new ActionStatePair[actionSequence.length];
+        int n=0;
         for (int a=0; a<actionSequence.length; a++) {
-            try {
-                State state=new NPuzzleState(this, actionSequence[a]);
-                list.add(new ActionStatePair(actionSequence[a], state));
-            } catch (RuntimeException e) {
-                ; // illegal move
-            } 
+            int from=target(actionSequence[a]);
+            if (from < 0) continue; // illegal move
+            NPuzzleState state=new NPuzzleState(this);
+            state.slide(from);
+            list[n++]=new ActionStatePair(actionSequence[a], state);
         }
-        ActionStatePair[] pairs=new ActionStatePair[list.size()];
-        Iterator<ActionStatePair> iter=list.iterator();
-        for (int i=0; iter.hasNext(); i++) {
-            pairs[i]=(ActionStatePair)iter.next();
+        return n == list.length ? list : Arrays.copyOf(list, n);
+    }
+    
+    /**
+     * The successor function without the move that undoes the last one, which would only lead back
+     * to the parent state.
+     * @param last the action that led to this state, or null
+     * @return an array of the other valid Action State pairs
+     */
+    public ActionStatePair[] successor(Action last) {
+        Action undo=inverse(last);
+        ActionStatePair[] list=new ActionStatePair[actionSequence.length];
+        int n=0;
+        for (int a=0; a<actionSequence.length; a++) {
+            if (actionSequence[a]==undo) continue;
+            int from=target(actionSequence[a]);
+            if (from < 0) continue; // illegal move
+            NPuzzleState state=new NPuzzleState(this);
+            state.slide(from);
+            list[n++]=new ActionStatePair(actionSequence[a], state);
         }
-        return pairs;
+        return n == list.length ? list : Arrays.copyOf(list, n);
+    }
+    
+    /**
+     * @param action one of the moves, or null
+     * @return the move that undoes it (null for null)
+     */
+    public static Action inverse(Action action) {
+        if (action==MOVE_LEFT) return MOVE_RIGHT;
+        if (action==MOVE_RIGHT) return MOVE_LEFT;
+        if (action==MOVE_UP) return MOVE_DOWN;
+        if (action==MOVE_DOWN) return MOVE_UP;
+        return null;
+    }
+    
+    /**
+     * The automaton rejects the move sequences up to 12 moves long that some other sequence
+     * replaces, learned once and shared by all board sizes.
+     * @return the move pruner for tree searches
+     */
+    public MovePruner getMovePruner() {
+        return MoveAutomaton.standard();
+    }
+    
+    /**
+     * Check whether the goal can be reached from this state. Every move changes the parity of the
+     * number of inversions (on even boards together with the row of the space), so only half of all
+     * boards can be solved.
+     * @return true if the goal can be reached
+     */
+    public boolean isSolvable() {
+        int inversions=0;
+        for (int i=0; i<tables.cells; i++) {
+            int t=tile(i);
+            if (t==0) continue;
+            for (int j=i+1; j<tables.cells; j++) {
+                int u=tile(j);
+                if (u!=0 && u<t) inversions++;
+            }
+        }
+        if (squareSize%2==0)
+            inversions+=squareSize-1-tables.rowOf[blank];
+        return inversions%2==0;
+    }
+    
+    /**
+     * Rank this board among the solvable boards of its size: a dense index for tables and bitsets
+     * of boards (see RankBitSet), computed in time linear in the number of cells. The board is
+     * ranked by the cells of the space and all tiles but the last two, whose order the parity of
+     * solvable boards determines; an unsolvable board shares its rank with a solvable one.
+     * @return the rank, in [0, ranks(squareSize))
+     * @throws UnsupportedOperationException for boards larger than 4x4
+     */
+    public long rank() {
+    	PermutationRanking ranking = tables.ranking;
+    	if (ranking == null)
+    		throw new UnsupportedOperationException("Boards larger than " + BoardTables.PACKED_MAX_SIZE + "x" + BoardTables.PACKED_MAX_SIZE + " are not ranked");
+    	int[] where = new int[tables.cells];
+    	for (int i=0; i<tables.cells; i++) where[tile(i)] = i;
+    	return ranking.rank(where, ranking.newScratch());
+    }
+    
+    /**
+     * @param squareSize the size of the boards, at most 4
+     * @return the number of solvable boards of that size, one more than the largest rank
+     */
+    public static long ranks(int squareSize) {
+    	BoardTables t = BoardTables.forSize(squareSize);
+    	if (t.ranking == null)
+    		throw new UnsupportedOperationException("Boards larger than " + BoardTables.PACKED_MAX_SIZE + "x" + BoardTables.PACKED_MAX_SIZE + " are not ranked");
+    	return t.ranking.size();
+    }
+    
+    /**
+     * Make the solvable board of a rank.
+     * @param squareSize the size of the board, at most 4
+     * @param rank the rank, in [0, ranks(squareSize))
+     * @return the board whose rank it is
+     */
+    public static NPuzzleState unrank(int squareSize, long rank) {
+    	if (rank < 0 || rank >= ranks(squareSize))
+    		throw new IllegalArgumentException("Rank out of range: " + rank);
+    	BoardTables t = BoardTables.forSize(squareSize);
+    	int n = t.cells;
+    	int[] where = new int[n];
+    	t.ranking.unrank(rank, where, t.ranking.newScratch());
+    	
+    	// The last two tiles take the two free cells, in the order that makes the board solvable //
+    	boolean[] used = new boolean[n];
+    	for (int i=0; i<n-2; i++) used[where[i]] = true;
+    	for (int c=0, i=n-2; c<n; c++) {
+    		if (!used[c]) where[i++] = c;
+    	}
+    	int[] moved = new int[n];	// from the goal cell of every tile to its cell
+    	for (int i=0; i<n; i++) moved[i == 0 ? n-1 : i-1] = where[i];
+    	int spaceMoves = (squareSize-1-t.rowOf[where[0]]) + (squareSize-1-t.colOf[where[0]]);
+    	if (PermutationRanking.isEven(moved) != (spaceMoves % 2 == 0)) {
+    		int c = where[n-2];
+    		where[n-2] = where[n-1];
+    		where[n-1] = c;
+    	}
+    	
+    	long packed = 0;
+    	for (int i=1; i<n; i++) packed |= (long) i << (where[i] << 2);
+    	NPuzzleState s = new NPuzzleState(squareSize);
+    	s.load(packed);
+    	return s;
     }
     
     /**
@@ -205,6 +518,25 @@ public final class NPuzzleState implements State {
         return dist;
     }
 
+    /**
+     * The Manhattan distance between two boards of the same size: the sum over all tiles of the
+     * rows plus columns between the cell of the tile on this board and on the other.
+     * With the goal as the other board this is Heuristic 2.
+     * @param other the board to compare to
+     * @return the distance between the two boards
+     */
+    public int manhattan(NPuzzleState other) {
+    	int[] at = new int[tables.cells];
+    	for (int i = 0; i < tables.cells; i++) at[other.tile(i)] = i;
+    	int dist = 0;
+    	for (int i = 0; i < tables.cells; i++) {
+    		int t = tile(i);
+    		if (t == 0) continue;
+    		dist += Math.abs(tables.rowOf[i] - tables.rowOf[at[t]]) + Math.abs(tables.colOf[i] - tables.colOf[at[t]]);
+    	}
+    	return dist;
+    }
+
     /**
      * This method is called if states are checked for equality on basis of the tile configuration 
      * (e.g. if checking for previous instances in the queue)
@@ -214,17 +546,51 @@ public final class NPuzzleState implements State {
     public boolean equals(Object obj) {
         if (obj.getClass().equals(this.getClass())) {
             NPuzzleState state=(NPuzzleState)obj;
-            for (int r=0; r<tiles.length; r++) {    
-                for (int c=0; c<tiles[r].length; c++) {
-                    if (state.tiles[r][c]!=tiles[r][c])
-                        return false;
-                }
-            }
-            return true;
+            if (state.key!=key || state.squareSize!=squareSize)
+                return false;
+            if (cells == null)
+                return state.packed == packed;
+            return state.blank == blank && BoardKernels.INSTANCE.equal(state.cells, cells);
         }
         return false;
     }
     
+    /**
+     * The hash code is folded from the Zobrist key, so it costs nothing to compute.
+     * @return the hash code of the tile configuration
+     */
+    public int hashCode() {
+        return (int)(key ^ (key >>> 32));
+    }
+    
+    /**
+     * Every move updates heuristics 1, 2 and 4 by the tile it slides, so they are read without any work.
+     * @param heuristic a heuristic
+     * @return the value of heuristic 1, 2 or 4 for this board, or -1 for any other heuristic
+     */
+    public int incrementalH(Heuristic heuristic) {
+    	if (heuristic == Heuristic.Numbered.H2) return h2;
+    	else if (heuristic == Heuristic.Numbered.H1) return h1;
+    	else if (heuristic == Heuristic.Numbered.H4) return h4;
+    	return -1;
+    }
+    
+    /**
+     * Boards up to 4x4 are their own key: the packed form is distinct for every board. Larger boards
+     * use the Zobrist key.
+     * @return the key of the tile configuration
+     */
+    public long key() {
+        return cells == null ? packed : key;
+    }
+    
+    /**
+     * @return the 64-bit Zobrist key of the tile configuration
+     */
+    public long getKey() {
+        return key;
+    }
+    
     /**
      * A printable string of the state - displays the tile configuration using newlines.
      * @return a string displaying the tile configuration of the state
@@ -232,9 +598,9 @@ public final class NPuzzleState implements State {
     public String toString() {
         DecimalFormat nf=new DecimalFormat("00");
         StringBuffer sb=new StringBuffer();
-        for (int r=0; r<tiles.length; r++) {
-            for (int c=0; c<tiles[r].length; c++) {
-                sb.append(" "+nf.format(tiles[r][c]));
+        for (int r=0; r<squareSize; r++) {
+            for (int c=0; c<squareSize; c++) {
+                sb.append(" "+nf.format(getTile(r, c)));
             }
             sb.append("\n");
         }
@@ -246,14 +612,7 @@ public final class NPuzzleState implements State {
      * @return Heuristic 1 value of the state
      */
     public int getH1() {
-    	int errors = 0;
-		for (int r=0; r<tiles.length; r++) {
-			for (int c=0; c<tiles[r].length; c++) {
-				if (tiles[r][c] == 0) continue;		// Do not include space
-				if (tiles[r][c] != r*squareSize+c+1) errors++;
-			}
-		}
-		return errors;
+    	return h1;
     }
     
     /**
@@ -262,23 +621,7 @@ public final class NPuzzleState implements State {
      * @return Heuristic 2 value of the state
      */
     public int getH2() {
-    	int mdist = 0;
-		for (int r=0; r<tiles.length; r++) {
-			for (int c=0; c<tiles[r].length; c++) {
-				if (tiles[r][c] == 0) continue;		// Do not include space
-				
-				int c1 = (tiles[r][c] - 1) % squareSize;
-				int r1 = ((tiles[r][c] - 1) - c1) / squareSize;
-				
-				if (tiles[r][c] == 0) {
-					c1 = squareSize - 1;
-					r1 = squareSize - 1;
-				}
-				
-				mdist += Math.abs(r - r1) + Math.abs(c - c1);
-			}
-		}
-		return mdist;
+    	return h2;
     }
     
     /**
@@ -288,15 +631,11 @@ public final class NPuzzleState implements State {
      * @return Heuristic 3 value of the state
      */
     public int getH3() {
-    	int numswaps = 0, space = -1;
+    	int numswaps = 0, space = blank;
     	List<Integer> permutation = new ArrayList<Integer>();
     	
-    	for (int r=0; r<tiles.length; r++) {
-			for (int c=0; c<tiles[r].length; c++) {
-				// record the position of the 'space' tile //
-				if (tiles[r][c] == 0) space = permutation.size();
-				permutation.add(tiles[r][c]);
-			}
+    	for (int i=0; i<tables.cells; i++) {
+			permutation.add(tile(i));
 		}
     	while (true) {
 	    	int swap = -1;
@@ -333,18 +672,6 @@ public final class NPuzzleState implements State {
      * @return Heuristic 4 value of the state
      */
     public int getH4() {
-    	int incorrectrow = 0, incorrectcolumn = 0;
-		for (int r=0; r<tiles.length; r++) {
-			for (int c=0; c<tiles[r].length; c++) {
-				if (tiles[r][c] == 0) continue;		// Do not include space
-				
-				int c1 = (tiles[r][c] - 1) % squareSize;
-				int r1 = ((tiles[r][c] - 1) - c1) / squareSize;
-				
-				if (r1 != r) incorrectrow++;
-				if (c1 != c) incorrectcolumn++;
-			}
-		}
-		return incorrectrow + incorrectcolumn;
+    	return h4;
     }
 }
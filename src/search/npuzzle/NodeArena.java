@@ -0,0 +1,228 @@
+package search.npuzzle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import search.Action;
+
+/**
+ * A fixed-size store of search nodes for boards up to 4x4, kept as columns of primitives instead of
+ * one Node object per node: the packed board, the index of the parent node, the action that led to
+ * the node (2 bits), g and h. A node is just its index in the arena, so a node costs
+ * {@link #BYTES_PER_NODE} bytes and no object header or pointer, and the garbage collector never
+ * has to trace it. The columns can live on or off the Java heap.
+ *
+ * Nodes are only ever added; the path to a node is found by walking the parent indices.
+ */
+public final class NodeArena {
+	/** The bytes taken by one node over all columns */
+	public static final int BYTES_PER_NODE = 8 + 4 + 2 + 1 + 1;
+	/** The actions in the order of their 2-bit codes */
+	static final Action[] ACTIONS = { NPuzzleState.MOVE_LEFT, NPuzzleState.MOVE_RIGHT, NPuzzleState.MOVE_UP, NPuzzleState.MOVE_DOWN };
+	/** The parent index of a root node */
+	static final int NO_PARENT = -1;
+	/** The nodes copied to or from a file at a time */
+	private static final int IO_NODES = 4096;
+
+	private final int capacity;
+	private final LongBuffer boards;
+	private final IntBuffer parents;
+	private final ShortBuffer gs;
+	private final ByteBuffer hs;
+	/** The action code in the low 2 bits, the cell of the space in the high 4 */
+	private final ByteBuffer moves;
+	private int size;
+
+	/**
+	 * Create an empty arena.
+	 * @param capacity the most nodes the arena can hold
+	 * @param direct true to keep the columns outside the Java heap
+	 */
+	public NodeArena(int capacity, boolean direct) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		this.boards = column(capacity * 8L, direct).asLongBuffer();
+		this.parents = column(capacity * 4L, direct).asIntBuffer();
+		this.gs = column(capacity * 2L, direct).asShortBuffer();
+		this.hs = column(capacity, direct);
+		this.moves = column(capacity, direct);
+	}
+
+	private static ByteBuffer column(long bytes, boolean direct) {
+		if (bytes > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Arena column too large: " + bytes + " bytes");
+		ByteBuffer b = direct ? ByteBuffer.allocateDirect((int) bytes) : ByteBuffer.allocate((int) bytes);
+		return b.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * @return the most nodes the arena can hold
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of nodes in the arena
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all nodes, keeping the memory.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Add a node.
+	 * @param board the packed board
+	 * @param blank the cell of the space
+	 * @param parent the index of the parent node, or NO_PARENT
+	 * @param action the code of the action that led here (an index into ACTIONS)
+	 * @param g the cost of the path to the node
+	 * @param h the heuristic value of the board
+	 * @return the index of the node, or -1 if the arena is full
+	 */
+	int add(long board, int blank, int parent, int action, int g, int h) {
+		if (size == capacity) return -1;
+		if (g > Short.MAX_VALUE || h > 0xFF)
+			throw new IllegalArgumentException("g " + g + " or h " + h + " out of range");
+		int i = size++;
+		boards.put(i, board);
+		parents.put(i, parent);
+		gs.put(i, (short) g);
+		hs.put(i, (byte) h);
+		moves.put(i, (byte) (blank << 2 | action));
+		return i;
+	}
+
+	/**
+	 * @param i the index of a node
+	 * @return the packed board of the node
+	 */
+	long board(int i) {
+		return boards.get(i);
+	}
+
+	/**
+	 * @param i the index of a node
+	 * @return the index of the parent node, or NO_PARENT
+	 */
+	int parent(int i) {
+		return parents.get(i);
+	}
+
+	/**
+	 * @param i the index of a node
+	 * @return the cell of the space
+	 */
+	int blank(int i) {
+		return (moves.get(i) & 0xFF) >>> 2;
+	}
+
+	/**
+	 * @param i the index of a node
+	 * @return the code of the action that led to the node
+	 */
+	int action(int i) {
+		return moves.get(i) & 3;
+	}
+
+	/**
+	 * @param i the index of a node
+	 * @return the cost of the path to the node
+	 */
+	public int g(int i) {
+		return gs.get(i);
+	}
+
+	/**
+	 * @param i the index of a node
+	 * @return the heuristic value of the node
+	 */
+	public int h(int i) {
+		return hs.get(i) & 0xFF;
+	}
+
+	/**
+	 * Write nodes to a file, in the order of the columns, BYTES_PER_NODE bytes each. Nodes are never
+	 * changed once added, so this may run on another thread while nodes are added past the range.
+	 * @param ch the file, written from its current position
+	 * @param from the first node to write
+	 * @param to the node after the last one to write
+	 * @throws IOException if the file cannot be written
+	 */
+	void write(FileChannel ch, int from, int to) throws IOException {
+		ByteBuffer b = ByteBuffer.allocateDirect(IO_NODES * BYTES_PER_NODE).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = from; i < to; i++) {
+			b.putLong(boards.get(i)).putInt(parents.get(i)).putShort(gs.get(i)).put(hs.get(i)).put(moves.get(i));
+			if (!b.hasRemaining() || i == to - 1) {
+				b.flip();
+				while (b.hasRemaining()) ch.write(b);
+				b.clear();
+			}
+		}
+	}
+
+	/**
+	 * Replace the nodes of the arena by nodes written by write.
+	 * @param ch the file, read from its current position
+	 * @param count the number of nodes to read
+	 * @throws IOException if the file cannot be read or holds fewer nodes
+	 */
+	void read(FileChannel ch, int count) throws IOException {
+		if (count > capacity)
+			throw new IOException(count + " nodes do not fit an arena of " + capacity);
+		ByteBuffer b = ByteBuffer.allocateDirect(IO_NODES * BYTES_PER_NODE).order(ByteOrder.LITTLE_ENDIAN);
+		b.limit(0);
+		for (int i = 0; i < count; i++) {
+			if (!b.hasRemaining()) {
+				b.clear();
+				b.limit((int) Math.min(b.capacity(), (long) (count - i) * BYTES_PER_NODE));
+				while (b.hasRemaining()) {
+					if (ch.read(b) < 0) throw new IOException("Node file ends after " + i + " of " + count + " nodes");
+				}
+				b.flip();
+			}
+			boards.put(i, b.getLong());
+			parents.put(i, b.getInt());
+			gs.put(i, b.getShort());
+			hs.put(i, b.get());
+			moves.put(i, b.get());
+		}
+		size = count;
+	}
+
+	/**
+	 * @param i the index of a node
+	 * @param squareSize the size of the board
+	 * @return the board of the node
+	 */
+	public NPuzzleState getState(int i, int squareSize) {
+		return new NPuzzleState(squareSize, board(i));
+	}
+
+	/**
+	 * Determine all actions that were used to get to a node, by walking the parent indices.
+	 * @param i the index of a node
+	 * @return all actions that took us to this node, the last one first (as Node.getActions)
+	 */
+	public Action[] getActions(int i) {
+		int depth = 0;
+		for (int n = i; parent(n) != NO_PARENT; n = parent(n)) depth++;
+		Action[] steps = new Action[depth];
+		for (int k = 0, n = i; k < depth; k++, n = parent(n)) {
+			steps[k] = ACTIONS[action(n)];
+		}
+		return steps;
+	}
+}
@@ -0,0 +1,337 @@
+package search.npuzzle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A pattern database for a group of tiles of the N-Puzzle.
+ * For every placement of the pattern tiles it stores the least number of moves of pattern tiles
+ * needed to bring them to their goal cells. The other tiles are ignored and the space is assumed to
+ * be wherever it is needed, so only moves of pattern tiles are counted and the values of disjoint
+ * patterns can be added.
+ *
+ * The values are stored with 4 bits per entry when they all fit, 8 bits otherwise, and the file is
+ * memory-mapped when loaded so the operating system can share it between processes. Entries are
+ * indexed by the rank of the placement of the pattern tiles (see PermutationRanking), which takes
+ * time linear in the size of the pattern.
+ */
+public final class PatternDatabase {
+	/** Marks the start of a pattern database file */
+	private static final int MAGIC = 0x4E504442;	// "NPDB"
+	/** The file format version (2: entries in the order of PermutationRanking) */
+	private static final int VERSION = 2;
+	/** Marks an entry that has not been reached yet while building */
+	private static final int UNSEEN = 0xFF;
+
+	/** The side length of the board */
+	private final int squareSize;
+	/** The number of cells on the board */
+	private final int cells;
+	/** The tiles of the pattern */
+	private final int[] tiles;
+	/** The number of entries, one per placement of the pattern tiles */
+	private final int entries;
+	/** Ranks the placements of the pattern tiles */
+	private final PermutationRanking ranking;
+	/** The number of bits per entry, 4 or 8 */
+	private final int bits;
+	/** The entries, either in memory or mapped from a file */
+	private final ByteBuffer data;
+
+	private PatternDatabase(int squareSize, int[] tiles, int bits, ByteBuffer data) {
+		this.squareSize = squareSize;
+		this.cells = squareSize * squareSize;
+		this.tiles = tiles.clone();
+		this.entries = (int) size(cells, tiles.length);
+		this.ranking = new PermutationRanking(cells, tiles.length);
+		this.bits = bits;
+		this.data = data;
+	}
+
+	/**
+	 * @param cells the number of cells on the board
+	 * @param k the number of tiles in a pattern
+	 * @return the number of placements of k tiles on the board
+	 */
+	static long size(int cells, int k) {
+		long n = 1;
+		for (int i = 0; i < k; i++) n *= cells - i;
+		return n;
+	}
+
+	/**
+	 * @return the tiles of the pattern
+	 */
+	public int[] getTiles() {
+		return tiles.clone();
+	}
+
+	/**
+	 * @return the number of tiles in the pattern
+	 */
+	public int getPatternSize() {
+		return tiles.length;
+	}
+
+	/**
+	 * @return the number of bits stored per entry
+	 */
+	public int getBits() {
+		return bits;
+	}
+
+	/**
+	 * Rank the placement of the pattern tiles.
+	 * @param positions the cell of each pattern tile, in pattern order
+	 * @param scratch scratch space of at least two entries per pattern tile and one per cell
+	 * @return a unique index in [0, entries)
+	 */
+	int rank(int[] positions, int[] scratch) {
+		return (int) ranking.rank(positions, scratch);
+	}
+
+	/**
+	 * Turn an index back into the placement of the pattern tiles.
+	 * @param index an index in [0, entries)
+	 * @param positions receives the cell of each pattern tile, in pattern order
+	 * @param scratch scratch space as for rank
+	 */
+	void unrank(int index, int[] positions, int[] scratch) {
+		ranking.unrank(index, positions, scratch);
+	}
+
+	/**
+	 * @return scratch space for rank, unrank and lookup
+	 */
+	int[] newScratch() {
+		return ranking.newScratch();
+	}
+
+	/**
+	 * Look up the value of a board.
+	 * @param where the cell of every tile of the board
+	 * @param positions scratch space of at least one entry per pattern tile
+	 * @param scratch scratch space as for rank
+	 * @return the number of moves of pattern tiles needed to solve the pattern
+	 */
+	int lookup(int[] where, int[] positions, int[] scratch) {
+		for (int i = 0; i < tiles.length; i++) positions[i] = where[tiles[i]];
+		return get((int) ranking.rank(positions, scratch));
+	}
+
+	/**
+	 * Look up the value of a board.
+	 * @param state the board
+	 * @return the number of moves of pattern tiles needed to solve the pattern
+	 */
+	public int lookup(NPuzzleState state) {
+		int[] where = new int[cells];
+		for (int i = 0; i < cells; i++) where[state.tile(i)] = i;
+		return lookup(where, new int[tiles.length], newScratch());
+	}
+
+	private int get(int index) {
+		if (bits == 8) return data.get(index) & 0xFF;
+		return (data.get(index >>> 1) >>> ((index & 1) << 2)) & 0xF;
+	}
+
+	/**
+	 * Build a pattern database by a breadth-first search backwards from the goal placement.
+	 * The search takes a byte per entry, then half a byte more per entry to pack the values, plus
+	 * an int queue as long as the widest layer of the search: 519 + 260 MB and more for the 8-tile
+	 * group of the 15-puzzle. The width of the layers is not known up front, so the heap is checked
+	 * again each time the queue doubles, rather than letting the search run out of memory.
+	 * @param squareSize the side length of the board
+	 * @param tiles the tiles of the pattern
+	 * @return the (in-memory) pattern database
+	 * @throws IllegalStateException if the heap cannot hold the table and its packed copy, or the queue
+	 */
+	public static PatternDatabase build(int squareSize, int[] tiles) {
+		int cells = squareSize * squareSize;
+		long size = size(cells, tiles.length);
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Pattern too large: " + size + " entries");
+
+		checkHeap(tiles, size + size / 2);
+
+		PatternDatabase index = new PatternDatabase(squareSize, tiles, 8, null);
+		byte[] dist = new byte[(int) size];
+		Arrays.fill(dist, (byte) UNSEEN);
+
+		int[] positions = new int[tiles.length];
+		for (int i = 0; i < tiles.length; i++) positions[i] = tiles[i] - 1;	// tile t belongs in cell t-1
+		int[] scratch = index.newScratch();
+		int start = index.rank(positions, scratch);
+		dist[start] = 0;
+
+		// Breadth-first search, one move of one pattern tile at a time //
+		int[] queue = new int[1024];
+		int head = 0, tail = 0, max = 0;
+		queue[tail++] = start;
+		boolean[] used = new boolean[cells];
+		while (head != tail) {
+			int current = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			int d = dist[current] & 0xFF;
+			index.unrank(current, positions, scratch);
+			Arrays.fill(used, false);
+			for (int p : positions) used[p] = true;
+
+			for (int i = 0; i < positions.length; i++) {
+				int p = positions[i], row = p / squareSize, col = p % squareSize;
+				for (int m = 0; m < 4; m++) {
+					int q;
+					if (m == 0) q = col > 0 ? p - 1 : -1;
+					else if (m == 1) q = col < squareSize - 1 ? p + 1 : -1;
+					else if (m == 2) q = row > 0 ? p - squareSize : -1;
+					else q = row < squareSize - 1 ? p + squareSize : -1;
+					if (q < 0 || used[q]) continue;		// off the board or taken by a pattern tile
+
+					positions[i] = q;
+					int next = index.rank(positions, scratch);
+					positions[i] = p;
+					if ((dist[next] & 0xFF) != UNSEEN) continue;
+
+					dist[next] = (byte) (d + 1);
+					if (d + 1 > max) max = d + 1;
+					queue[tail] = next;
+					tail = (tail + 1) & (queue.length - 1);
+					if (tail == head) {
+						// Queue full, double it keeping the order //
+						checkHeap(tiles, queue.length * 8L);
+						int[] bigger = new int[queue.length * 2];
+						System.arraycopy(queue, head, bigger, 0, queue.length - head);
+						System.arraycopy(queue, 0, bigger, queue.length - head, head);
+						head = 0;
+						tail = queue.length;
+						queue = bigger;
+					}
+				}
+			}
+		}
+
+		queue = null;	// free for the packed copy
+		if (max > 15)
+			return new PatternDatabase(squareSize, tiles, 8, ByteBuffer.wrap(dist));
+
+		// Every value fits in a nibble //
+		byte[] packed = new byte[(int) ((size + 1) / 2)];
+		for (int i = 0; i < dist.length; i++) {
+			packed[i >>> 1] |= dist[i] << ((i & 1) << 2);
+		}
+		return new PatternDatabase(squareSize, tiles, 4, ByteBuffer.wrap(packed));
+	}
+
+	/**
+	 * Check that the heap has room for more of a build, so it fails with a hint instead of an OutOfMemoryError.
+	 * @param tiles the tiles of the pattern being built
+	 * @param needed the bytes about to be allocated
+	 * @throws IllegalStateException if fewer bytes than that are free
+	 */
+	private static void checkHeap(int[] tiles, long needed) {
+		Runtime runtime = Runtime.getRuntime();
+		long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		if (needed > available) {
+			System.gc();	// the queues already outgrown may still count as used
+			available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		}
+		if (needed > available)
+			throw new IllegalStateException("Building the pattern database of tiles " + Arrays.toString(tiles)
+					+ " needs at least " + (needed >> 20) + " MB more heap, but only " + (available >> 20)
+					+ " MB are free; raise -Xmx or copy a built file in");
+	}
+
+	/**
+	 * Write the pattern database to a file.
+	 * The file is written under a temporary name first, so a partially written file is never loaded.
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(squareSize);
+			out.writeInt(tiles.length);
+			for (int t : tiles) out.writeInt(t);
+			out.writeInt(bits);
+			out.writeLong(entries);
+
+			ByteBuffer d = data.duplicate();
+			d.clear();
+			byte[] chunk = new byte[1 << 16];
+			while (d.hasRemaining()) {
+				int n = Math.min(chunk.length, d.remaining());
+				d.get(chunk, 0, n);
+				out.write(chunk, 0, n);
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) throw new IOException("Cannot rename " + tmp + " to " + file);
+		}
+	}
+
+	/**
+	 * @param file a file
+	 * @return true if it is a pattern database in the current format
+	 * @throws IOException if the file cannot be read
+	 */
+	static boolean isCurrent(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return file.length() >= 8 && in.readInt() == MAGIC && in.readInt() == VERSION;
+		}
+	}
+
+	/**
+	 * Load a pattern database by mapping its file into memory.
+	 * @param file the file to load
+	 * @return the pattern database
+	 * @throws IOException if the file cannot be read or is not a pattern database
+	 */
+	public static PatternDatabase load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		int squareSize, bits;
+		int[] tiles;
+		long entries, header;
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("Not a pattern database: " + file);
+			squareSize = in.readInt();
+			tiles = new int[in.readInt()];
+			for (int i = 0; i < tiles.length; i++) tiles[i] = in.readInt();
+			bits = in.readInt();
+			entries = in.readLong();
+			header = 5 * 4 + 4 * tiles.length + 8;
+		} finally {
+			in.close();
+		}
+		if (entries != size(squareSize * squareSize, tiles.length) || (bits != 4 && bits != 8))
+			throw new IOException("Corrupt pattern database: " + file);
+
+		long length = bits == 8 ? entries : (entries + 1) / 2;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() != header + length)
+				throw new IOException("Truncated pattern database: " + file);
+			// The mapping stays valid after the channel is closed //
+			ByteBuffer data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, header, length);
+			return new PatternDatabase(squareSize, tiles, bits, data);
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package search.npuzzle;
+
+/**
+ * The ranking of Myrvold and Ruskey: a one-to-one map between the placements of k distinct items
+ * on n cells (k-permutations of n) and the numbers 0 to n!/(n-k)! - 1, computed in O(k) time per
+ * rank and O(n) per unrank. It is not the lexicographic order, so a rank is only meaningful as an
+ * index into a table built with the same ranking.
+ *
+ * A full permutation is ranked by swapping the value in its last place with the value n - 1,
+ * wherever that is, recording the value that was in the last place, and ranking the first n - 1
+ * places the same way; the recorded values are the digits of the rank in the mixed radix n, n - 1,
+ * and so on. A placement of k items is ranked as the last k places of a permutation. The first k
+ * steps only read the places from n - k up and only look up the values from n - k up, so the first
+ * n - k places need not be known: a value below them is simply "elsewhere".
+ *
+ * A ranking holds no state of its own; the caller passes scratch space (see newScratch), so one
+ * ranking may be shared by threads that each have their own.
+ */
+public final class PermutationRanking {
+	/** The number of cells */
+	private final int n;
+	/** The number of items placed */
+	private final int k;
+	/** The number of placements */
+	private final long size;
+
+	/**
+	 * Create the ranking of the placements of some items on some cells.
+	 * @param cells the number of cells
+	 * @param items the number of items, at most cells
+	 * @throws IllegalArgumentException if there are more placements than fit in a long
+	 */
+	public PermutationRanking(int cells, int items) {
+		if (items < 0 || items > cells)
+			throw new IllegalArgumentException("Cannot place " + items + " items on " + cells + " cells");
+		long s = 1;
+		try {
+			for (int i = 0; i < items; i++) s = Math.multiplyExact(s, cells - i);
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("Too many placements of " + items + " items on " + cells + " cells");
+		}
+		this.n = cells;
+		this.k = items;
+		this.size = s;
+	}
+
+	/**
+	 * @return the number of cells
+	 */
+	public int getCells() {
+		return n;
+	}
+
+	/**
+	 * @return the number of items placed
+	 */
+	public int getItems() {
+		return k;
+	}
+
+	/**
+	 * @return the number of placements, one more than the largest rank
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return scratch space for rank and unrank
+	 */
+	public int[] newScratch() {
+		return new int[Math.max(2 * k, n)];
+	}
+
+	/**
+	 * Rank a placement.
+	 * @param positions the cell of each item (only the first k entries are read), all different
+	 * @param scratch scratch space from newScratch
+	 * @return the rank, in [0, size())
+	 */
+	public long rank(int[] positions, int[] scratch) {
+		// scratch[p - base] is the value in place p, scratch[k + v - base] the place of value v //
+		int base = n - k;
+		for (int j = 0; j < k; j++) scratch[k + j] = -1;	// elsewhere
+		for (int j = 0; j < k; j++) {
+			int v = positions[j];
+			scratch[k - 1 - j] = v;		// item j is in place n-1-j
+			if (v >= base) scratch[k + v - base] = n - 1 - j;
+		}
+
+		long rank = 0, radix = 1;
+		for (int i = n; i > base; i--) {
+			int place = i - 1 - base;
+			int s = scratch[place];
+			int at = scratch[k + place];	// the place of the value i-1
+			if (at >= 0) scratch[at - base] = s;
+			if (s >= base) scratch[k + s - base] = at;
+			rank += s * radix;
+			radix *= i;
+		}
+		return rank;
+	}
+
+	/**
+	 * Turn a rank back into a placement.
+	 * @param rank a rank in [0, size())
+	 * @param positions receives the cell of each item in its first k entries
+	 * @param scratch scratch space from newScratch
+	 */
+	public void unrank(long rank, int[] positions, int[] scratch) {
+		for (int c = 0; c < n; c++) scratch[c] = c;
+		for (int i = n; i > n - k; i--) {
+			int s = (int) (rank % i);
+			rank /= i;
+			int t = scratch[i - 1];
+			scratch[i - 1] = scratch[s];
+			scratch[s] = t;
+		}
+		for (int j = 0; j < k; j++) positions[j] = scratch[n - 1 - j];
+	}
+
+	/**
+	 * Check the parity of a permutation, by counting its cycles. A board of the N-Puzzle is
+	 * solvable exactly when the permutation taking the home cell of every tile (and of the space)
+	 * to its cell is even if the space is an even number of moves from its home cell, and odd
+	 * otherwise: every move is a swap and moves the space by one.
+	 * @param permutation the permutation of 0 to length - 1
+	 * @return true if it is the product of an even number of swaps
+	 */
+	public static boolean isEven(int[] permutation) {
+		boolean[] seen = new boolean[permutation.length];
+		int swaps = 0;
+		for (int i = 0; i < permutation.length; i++) {
+			if (seen[i]) continue;
+			for (int j = i; !seen[j]; j = permutation[j]) {
+				seen[j] = true;
+				swaps++;
+			}
+			swaps--;	// a cycle of length m is m - 1 swaps
+		}
+		return (swaps & 1) == 0;
+	}
+}
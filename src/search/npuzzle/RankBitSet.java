@@ -0,0 +1,80 @@
+package search.npuzzle;
+
+import java.util.Arrays;
+
+/**
+ * A set of ranks (see PermutationRanking) as one bit per possible rank: a closed list for a space
+ * small enough to have a bit for every state, whatever the number of states visited. The 181,440
+ * solvable boards of the 3x3 puzzle take 23 KB, and the placements of the space and six tiles on
+ * the 4x4 board take 7 MB.
+ */
+public final class RankBitSet {
+	/** The most ranks a set can hold */
+	public static final long MAX_CAPACITY = 64L * (Integer.MAX_VALUE - 8);
+
+	private final long[] words;
+	private final long capacity;
+	private long size;
+
+	/**
+	 * Create an empty set.
+	 * @param capacity one more than the largest rank the set can hold
+	 */
+	public RankBitSet(long capacity) {
+		if (capacity < 0 || capacity > MAX_CAPACITY)
+			throw new IllegalArgumentException("Capacity out of range: " + capacity);
+		this.capacity = capacity;
+		this.words = new long[(int) ((capacity + 63) >>> 6)];
+	}
+
+	/**
+	 * Add a rank.
+	 * @param rank the rank, in [0, capacity)
+	 * @return true if it was not in the set yet
+	 */
+	public boolean add(long rank) {
+		int w = (int) (rank >>> 6);
+		long bit = 1L << rank;
+		if ((words[w] & bit) != 0) return false;
+		words[w] |= bit;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @param rank a rank, in [0, capacity)
+	 * @return true if it is in the set
+	 */
+	public boolean contains(long rank) {
+		return (words[(int) (rank >>> 6)] & (1L << rank)) != 0;
+	}
+
+	/**
+	 * Remove every rank.
+	 */
+	public void clear() {
+		Arrays.fill(words, 0);
+		size = 0;
+	}
+
+	/**
+	 * @return the number of ranks in the set
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return one more than the largest rank the set can hold
+	 */
+	public long capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the bytes taken by the bits
+	 */
+	public long bytes() {
+		return 8L * words.length;
+	}
+}
@@ -0,0 +1,255 @@
+package search.npuzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import search.Action;
+import search.DistanceOracle;
+import search.Node;
+import search.State;
+
+/**
+ * The optimal distance and best move of boards on earlier optimal solutions, for boards of one size.
+ *
+ * Entries are kept in two tiers: the most recently used ones in memory, evicted least recently used
+ * first, and all of them (as long as it has room) in a hash table in a memory-mapped file, which
+ * outlives the JVM. Every entry is written through to the file, and entries read from the file are
+ * promoted into memory. Boards are keyed by NPuzzleState.key: up to 4x4 their packed form, larger
+ * boards their 64-bit Zobrist key, so two of them could in principle share an entry.
+ *
+ * The file is a header (magic, board size, slots, entries used) and open-addressing slots of the key
+ * (8 bytes, 0 for an empty slot) and the entry (4 bytes: the distance times 4 plus the code of the
+ * best move). The table takes no new entries once it is three quarters full.
+ */
+public final class SolutionCache implements DistanceOracle, AutoCloseable {
+	/** The entries kept in memory by the shared caches */
+	private static final int MEMORY_ENTRIES = 1 << 16;
+	/** The slots of the file of a shared cache */
+	private static final int DISK_SLOTS = 1 << 22;
+	private static final int MAGIC = 0x4E50534B;	// "NPSK"
+	private static final int HEADER_BYTES = 16;
+	private static final int SLOT_BYTES = 12;
+
+	private static final SolutionCache[] shared = new SolutionCache[BoardTables.MAX_SIZE + 1];
+
+	private final int squareSize;
+	private final LinkedHashMap<Long, Integer> memory;
+	/** The file tier, or null for a cache in memory only */
+	private final MappedByteBuffer disk;
+	private final int mask;
+	private int used;
+	private long hits, misses;
+
+	/**
+	 * Create a cache in memory only.
+	 * @param squareSize the size of the boards
+	 * @param memoryEntries the most entries kept
+	 */
+	public SolutionCache(int squareSize, int memoryEntries) {
+		this.squareSize = squareSize;
+		BoardTables.forSize(squareSize);	// checks the size
+		this.memory = lru(memoryEntries);
+		this.disk = null;
+		this.mask = 0;
+	}
+
+	/**
+	 * Open a cache backed by a file, creating the file if it does not exist.
+	 * @param squareSize the size of the boards
+	 * @param memoryEntries the most entries kept in memory
+	 * @param file the file of the cache
+	 * @param slots the slots of a new file, a power of two (an existing file keeps its own)
+	 * @throws IOException if the file cannot be opened, or is not a cache for this board size
+	 */
+	public SolutionCache(int squareSize, int memoryEntries, File file, int slots) throws IOException {
+		if (Integer.bitCount(slots) != 1 || (long) slots * SLOT_BYTES + HEADER_BYTES > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("slots must be a power of two below 2^27: " + slots);
+		this.squareSize = squareSize;
+		BoardTables.forSize(squareSize);	// checks the size
+		this.memory = lru(memoryEntries);
+
+		boolean exists = file.length() >= HEADER_BYTES;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (exists) {
+				if (raf.readInt() != MAGIC || raf.readInt() != squareSize)
+					throw new IOException(file + " is not a cache of " + squareSize + "x" + squareSize + " boards");
+				slots = raf.readInt();
+			}
+			this.disk = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) slots * SLOT_BYTES);
+		}	// the mapping stays valid after the file is closed
+		disk.order(ByteOrder.BIG_ENDIAN);	// as RandomAccessFile reads the header
+		if (!exists) {
+			disk.putInt(0, MAGIC);
+			disk.putInt(4, squareSize);
+			disk.putInt(8, slots);
+		}
+		this.mask = slots - 1;
+		this.used = disk.getInt(12);
+	}
+
+	private static LinkedHashMap<Long, Integer> lru(final int entries) {
+		return new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+				return size() > entries;
+			}
+		};
+	}
+
+	/**
+	 * The cache shared by all searches of NPuzzleSearchApp for a board size. It is backed by the
+	 * file "cache-n.bin" in the directory named by the system property "npuzzle.cache.dir", or kept
+	 * in memory only if the property is not set.
+	 * @param squareSize the size of the boards
+	 * @return the shared cache of that size
+	 * @throws UncheckedIOException if the file cannot be opened
+	 */
+	public static SolutionCache forSize(int squareSize) {
+		BoardTables.forSize(squareSize);	// checks the size
+		synchronized (shared) {
+			SolutionCache c = shared[squareSize];
+			if (c == null) {
+				String dir = System.getProperty("npuzzle.cache.dir");
+				try {
+					if (dir == null) {
+						c = new SolutionCache(squareSize, MEMORY_ENTRIES);
+					} else {
+						new File(dir).mkdirs();
+						c = new SolutionCache(squareSize, MEMORY_ENTRIES, new File(dir, "cache-" + squareSize + ".bin"), DISK_SLOTS);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				shared[squareSize] = c;
+			}
+			return c;
+		}
+	}
+
+	private long key(NPuzzleState s) {
+		long k = s.key();
+		return k == 0 ? 1 : k;	// 0 marks an empty slot
+	}
+
+	/**
+	 * @return the entry of the board (distance times 4 plus move code), or -1
+	 */
+	private int lookup(State state) {
+		if (!(state instanceof NPuzzleState) || ((NPuzzleState) state).squareSize != squareSize) return -1;
+		long key = key((NPuzzleState) state);
+		Integer e = memory.get(key);
+		if (e == null && disk != null) {
+			int i = slot(key);
+			if (disk.getLong(offset(i)) == key) {
+				e = disk.getInt(offset(i) + 8);
+				memory.put(key, e);
+			}
+		}
+		if (e == null) {
+			misses++;
+			return -1;
+		}
+		hits++;
+		return e;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		int i = (int) (h ^ (h >>> 32)) & mask;
+		long k;
+		while ((k = disk.getLong(offset(i))) != 0 && k != key) i = (i + 1) & mask;
+		return i;
+	}
+
+	private static int offset(int slot) {
+		return HEADER_BYTES + slot * SLOT_BYTES;
+	}
+
+	public synchronized int distance(State s) {
+		int e = lookup(s);
+		return e < 0 ? -1 : e >>> 2;
+	}
+
+	public synchronized Action bestAction(State s) {
+		int e = lookup(s);
+		return e < 4 ? null : NodeArena.ACTIONS[e & 3];
+	}
+
+	/**
+	 * Record the distance and best move of a board.
+	 * @param s the board
+	 * @param distance the cost of an optimal solution of the board
+	 * @param best the first move of that solution (ignored for the goal)
+	 */
+	public synchronized void put(NPuzzleState s, int distance, Action best) {
+		if (s.squareSize != squareSize) return;
+		int e = distance << 2 | (distance == 0 ? 0 : MoveAutomaton.code(best));
+		long key = key(s);
+		memory.put(key, e);
+		if (disk != null) {
+			int i = slot(key);
+			if (disk.getLong(offset(i)) == 0) {
+				if (used >= (mask + 1) / 4 * 3) return;	// full: keep it in memory only
+				disk.putLong(offset(i), key);
+				disk.putInt(12, ++used);
+			}
+			disk.putInt(offset(i) + 8, e);
+		}
+	}
+
+	/**
+	 * Record every board on an optimal solution: each one is as far from the goal as the rest of
+	 * the path, and its best move is the next action of the path.
+	 * @param goal the goal node of an optimal solution
+	 */
+	public synchronized void learn(Node goal) {
+		for (Node n = goal; n.getParent() != null; n = n.getParent()) {
+			Node p = n.getParent();
+			if (p.getState() instanceof NPuzzleState) put((NPuzzleState) p.getState(), (int) (goal.getCost() - p.getCost()), n.getAction());
+		}
+		if (goal.getState() instanceof NPuzzleState) put((NPuzzleState) goal.getState(), 0, null);
+	}
+
+	/**
+	 * @return the number of entries in memory
+	 */
+	public synchronized int getMemoryEntries() {
+		return memory.size();
+	}
+
+	/**
+	 * @return the number of entries in the file (0 for a cache in memory only)
+	 */
+	public synchronized int getDiskEntries() {
+		return used;
+	}
+
+	/**
+	 * @return the number of lookups that found their board
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that did not find their board
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Write the file tier to disk.
+	 */
+	public synchronized void close() {
+		if (disk != null) disk.force();
+	}
+}
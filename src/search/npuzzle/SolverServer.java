@@ -0,0 +1,224 @@
+package search.npuzzle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import search.Action;
+import search.Heuristic;
+
+/**
+ * A resident solver that answers puzzles read line by line from standard input or from clients of
+ * a socket on the loopback address. One process serves every request, so the JVM starts once, the
+ * heuristic tables are loaded once, and the searches run on code the JIT has already compiled
+ * (warmUp runs a few searches before the first request arrives).
+ *
+ * A request is one line: an optional id followed by ':', then the tiles of the board in row-major
+ * order as BatchSolver reads them, e.g. "7:1 2 3 4 5 6 0 7 8". Without an id, requests are numbered
+ * from 0 on each connection. The answer is one tab-separated line, written as soon as the search
+ * finishes and so not necessarily in request order:
+ * <pre>
+ * id  length  moves  expanded  millis     e.g. "7	2	RR	2	0"
+ * id  ERR     reason
+ * </pre>
+ * where moves are the first letters of the actions (L, R, U, D: the direction the space moves).
+ * "PING" is answered with "PONG", "QUIT" closes the connection once its answers are written, and
+ * empty lines and lines starting with '#' are skipped.
+ *
+ * At most a fixed number of requests, over all clients, are accepted and not yet answered. A client
+ * whose request would exceed it is not read from until a search finishes, so a client that sends
+ * faster than the server solves is held back by its own socket (or pipe) filling up.
+ */
+public final class SolverServer implements AutoCloseable {
+	private final BatchSolver solver;
+	private final ExecutorService workers;
+	/** The requests that may still be accepted before reading stops */
+	private final Semaphore capacity;
+
+	/**
+	 * Create a server.
+	 * @param threads the number of searches run at once
+	 * @param queued the most requests accepted and not yet answered, over all clients
+	 * @param heuristic the heuristic of the searches
+	 * @param ida true to search with IDA*, false for A*
+	 * @param nodeLimit the most nodes one search may generate (bounds its memory)
+	 */
+	public SolverServer(int threads, int queued, Heuristic heuristic, boolean ida, long nodeLimit) {
+		if (queued < 1)
+			throw new IllegalArgumentException("queued must be positive: " + queued);
+		this.workers = Executors.newFixedThreadPool(threads);
+		this.solver = new BatchSolver(workers, queued, heuristic, ida, nodeLimit);
+		this.capacity = new Semaphore(queued);
+	}
+
+	/**
+	 * Load the heuristic tables for a board size and solve boards of that size until the searches
+	 * are compiled. The boards are random walks from the goal, so making them costs nothing.
+	 * @param squareSize the size of the boards
+	 * @param boards the number of boards to solve
+	 * @param moves the length of the random walks
+	 */
+	public void warmUp(int squareSize, int boards, int moves) {
+		Random random = new Random(squareSize);
+		for (int i = 0; i < boards; i++) {
+			NPuzzleState s = new NPuzzleState(squareSize);
+			for (int m = 0; m < moves; ) {
+				if (s.apply(NodeArena.ACTIONS[random.nextInt(NodeArena.ACTIONS.length)])) m++;
+			}
+			solver.solve(i, s);
+		}
+	}
+
+	/**
+	 * Answer the requests of one client until it closes the input or sends QUIT.
+	 * @param in the requests
+	 * @param out receives the answers
+	 * @throws IOException if the requests cannot be read
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void serve(BufferedReader in, final Writer out) throws IOException, InterruptedException {
+		final Semaphore answered = new Semaphore(0);
+		int accepted = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) continue;
+			if (line.equals("QUIT")) break;
+			if (line.equals("PING")) {
+				answer(out, "PONG");
+				continue;
+			}
+
+			int colon = line.indexOf(':');
+			final String id = colon < 0 ? String.valueOf(accepted) : line.substring(0, colon).trim();
+			final String board = line.substring(colon + 1);
+			capacity.acquire();		// stops reading this client while the server is full
+			accepted++;
+			workers.execute(new Runnable() {
+				public void run() {
+					try {
+						answer(out, solve(id, board));
+					} finally {
+						capacity.release();
+						answered.release();
+					}
+				}
+			});
+		}
+		answered.acquire(accepted);
+	}
+
+	private String solve(String id, String board) {
+		BatchSolver.Result r;
+		try {
+			r = solver.solve(0, BatchSolver.parse(board));
+		} catch (Throwable e) {
+			return id + "\tERR\t" + BatchSolver.describe(e);	// every request is answered
+		}
+		if (r.actions == null) return id + "\tERR\t" + r.error;
+
+		StringBuilder sb = new StringBuilder(id).append('\t').append(r.actions.length).append('\t');
+		for (Action a : r.actions) sb.append(a.toString().charAt(0));
+		return sb.append('\t').append(r.expanded).append('\t').append(r.millis).toString();
+	}
+
+	private static void answer(Writer out, String line) {
+		synchronized (out) {
+			try {
+				out.write(line);
+				out.write('\n');
+				out.flush();
+			} catch (IOException e) {
+				// the client has gone; its remaining answers are dropped
+			}
+		}
+	}
+
+	/**
+	 * Accept clients on a port of the loopback address, serving each on its own thread, until the
+	 * thread is interrupted or the socket fails.
+	 * @param port the port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public void listen(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			System.err.println("Listening on " + server.getLocalSocketAddress());
+			while (!Thread.currentThread().isInterrupted()) {
+				final Socket client = server.accept();
+				Thread t = new Thread(new Runnable() {
+					public void run() {
+						try (Socket s = client) {
+							s.setTcpNoDelay(true);
+							serve(new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII)),
+									new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII)));
+						} catch (IOException e) {
+							// the client has gone
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}, "client " + client.getRemoteSocketAddress());
+				t.setDaemon(true);
+				t.start();
+			}
+		}
+	}
+
+	/**
+	 * Stop the searches once the accepted requests are answered.
+	 */
+	public void close() {
+		workers.shutdown();
+	}
+
+	/**
+	 * Run a server on standard input and output, or on a port.
+	 * @param args any of -port n (default: standard input), -threads n (default: one per core),
+	 * -queue n (default: four per thread), -heuristic h (default 6, or e.g. max(6,5)), -ida,
+	 * -limit nodes (default 20000000) and -warm sizes (default 3,4; "none" to skip)
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = -1, threads = Runtime.getRuntime().availableProcessors(), queued = -1;
+		Heuristic heuristic = NPuzzleHeuristic.LINEAR_CONFLICT;
+		boolean ida = false;
+		long limit = 20000000;
+		String warm = "3,4";
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-port")) port = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-queue")) queued = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-heuristic")) heuristic = NPuzzleHeuristic.parse(args[++i]);
+			else if (args[i].equals("-ida")) ida = true;
+			else if (args[i].equals("-limit")) limit = Long.parseLong(args[++i]);
+			else if (args[i].equals("-warm")) warm = args[++i];
+			else throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		if (queued < 1) queued = 4 * threads;
+
+		try (SolverServer server = new SolverServer(threads, queued, heuristic, ida, limit)) {
+			long start = System.nanoTime();
+			if (!warm.equals("none")) {
+				for (String size : warm.split(",")) server.warmUp(Integer.parseInt(size.trim()), 200, 30);
+			}
+			System.err.println("Warmed up in " + (System.nanoTime() - start) / 1000000 + "ms");
+
+			if (port < 0) {
+				server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII)),
+						new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)));
+			} else {
+				server.listen(port);
+			}
+		}
+	}
+}
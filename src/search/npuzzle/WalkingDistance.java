@@ -0,0 +1,152 @@
+package search.npuzzle;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The walking distance of a board, read from a table built once per board size.
+ *
+ * The vertical walking distance forgets the columns: it only knows, for each row, how many tiles
+ * of each goal row stand in it, and the row of the space. A vertical move swaps the space with one
+ * tile of the row above or below, so the fewest moves that sort every tile into its goal row is a
+ * breadth-first distance in this much smaller space. The goal looks the same with rows and columns
+ * exchanged, so the horizontal walking distance uses the same table. Vertical moves never change the
+ * horizontal part and the other way around, so the sum is admissible, and it is never below the
+ * Manhattan distance.
+ *
+ * Boards up to 4x4 are supported (24964 table entries for 4x4), which are packed, so each row of the
+ * board is turned into its part of both codes by a lookup.
+ */
+final class WalkingDistance {
+	/** The largest board side with a table */
+	static final int MAX_SIZE = 4;
+	/** The bits of one count of the state code */
+	private static final int COUNT_BITS = 3;
+	/** The most entries of any table (4x4 has 24964) */
+	private static final int MAX_STATES = 1 << 15;
+
+	/** Read on every evaluation, so looked up without a lock once built */
+	private static final AtomicReferenceArray<WalkingDistance> tables = new AtomicReferenceArray<WalkingDistance>(MAX_SIZE + 1);
+
+	private final BoardTables board;
+	private final int n;
+	/** The index of each state code in distances */
+	private final LongIntMap index;
+	/** The walking distance of each state */
+	private final byte[] distances;
+	/**
+	 * The part of the vertical code a packed row adds, before shifting it to the row, and the part of
+	 * the horizontal code, indexed by the 4n bits of the row
+	 */
+	private final int[] rowVertical;
+	private final long[] rowHorizontal;
+
+	/**
+	 * Build the table by a breadth-first search from the goal. A state is coded as the counts of
+	 * tiles by row and goal row at COUNT_BITS each, with the row of the space above them.
+	 */
+	private WalkingDistance(int squareSize) {
+		this.board = BoardTables.forSize(squareSize);
+		this.n = squareSize;
+		this.index = new LongIntMap(MAX_STATES);
+
+		int[] counts = new int[n * n];
+		for (int r = 0; r < n; r++) counts[r * n + r] = n;
+		counts[n * n - 1] = n - 1;	// the space sits in the last row
+		long[] queue = new long[MAX_STATES];
+		byte[] depth = new byte[MAX_STATES];
+		int head = 0, tail = 0;
+		queue[tail++] = code(counts, n - 1);
+		index.put(queue[0], 0);
+
+		while (head < tail) {
+			long s = queue[head];
+			int blankRow = decode(s, counts);
+			for (int to = blankRow - 1; to <= blankRow + 1; to += 2) {
+				if (to < 0 || to >= n) continue;
+				// A tile of any goal row moves from the row the space enters into the row it leaves //
+				for (int g = 0; g < n; g++) {
+					if (counts[to * n + g] == 0) continue;
+					counts[to * n + g]--;
+					counts[blankRow * n + g]++;
+					long next = code(counts, to);
+					counts[blankRow * n + g]--;
+					counts[to * n + g]++;
+					if (index.get(next) >= 0) continue;
+					index.put(next, tail);
+					depth[tail] = (byte) (depth[head] + 1);
+					queue[tail++] = next;
+				}
+			}
+			head++;
+		}
+		this.distances = Arrays.copyOf(depth, tail);
+
+		// Tiles are counted by goal row within their row, and by column and goal column //
+		rowVertical = new int[1 << (4 * n)];
+		rowHorizontal = new long[1 << (4 * n)];
+		for (int bits = 0; bits < rowVertical.length; bits++) {
+			for (int c = 0; c < n; c++) {
+				int t = (bits >>> (4 * c)) & 0xF;
+				if (t == 0 || t >= board.cells) continue;
+				rowVertical[bits] += 1 << (COUNT_BITS * board.goalRow[t]);
+				rowHorizontal[bits] += 1L << (COUNT_BITS * (c * n + board.goalCol[t]));
+			}
+		}
+	}
+
+	/**
+	 * @param squareSize the side length of the board, at most MAX_SIZE
+	 * @return the (shared) table for boards of that size
+	 */
+	static WalkingDistance forSize(int squareSize) {
+		if (squareSize > MAX_SIZE)
+			throw new IllegalArgumentException("Walking distance supports boards up to " + MAX_SIZE + "x" + MAX_SIZE);
+		WalkingDistance t = tables.get(squareSize);
+		if (t != null) return t;
+		synchronized (tables) {
+			t = tables.get(squareSize);
+			if (t == null) {
+				t = new WalkingDistance(squareSize);
+				tables.set(squareSize, t);
+			}
+			return t;
+		}
+	}
+
+	private long code(int[] counts, int blankRow) {
+		long code = (long) blankRow << (COUNT_BITS * n * n);
+		for (int i = 0; i < n * n; i++) code |= (long) counts[i] << (COUNT_BITS * i);
+		return code;
+	}
+
+	private int decode(long code, int[] counts) {
+		for (int i = 0; i < n * n; i++) counts[i] = (int) (code >>> (COUNT_BITS * i)) & ((1 << COUNT_BITS) - 1);
+		return (int) (code >>> (COUNT_BITS * n * n));
+	}
+
+	/**
+	 * @return the number of states of the table
+	 */
+	int states() {
+		return distances.length;
+	}
+
+	/**
+	 * @param s a board of this size
+	 * @return the vertical plus the horizontal walking distance of the board
+	 */
+	int estimate(NPuzzleState s) {
+		// The codes are summed row by row, the space only sets the row above the counts //
+		int shift = COUNT_BITS * n * n, bits = 4 * n, mask = (1 << bits) - 1;
+		int blank = s.blank();
+		long vertical = (long) board.rowOf[blank] << shift, horizontal = (long) board.colOf[blank] << shift;
+		long p = s.packed();
+		for (int r = 0; r < n; r++) {
+			int row = (int) (p >>> (r * bits)) & mask;
+			vertical += (long) rowVertical[row] << (COUNT_BITS * n * r);
+			horizontal += rowHorizontal[row];
+		}
+		return distances[index.get(vertical)] + distances[index.get(horizontal)];
+	}
+}
@@ -0,0 +1,89 @@
+package search.npuzzle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import search.Action;
+import search.CheckpointWriter;
+import search.Heuristic;
+import search.Node;
+import search.SearchStats;
+import search.State;
+
+/**
+ * A search stopped after a checkpoint and resumed from it must end as the search run through would.
+ */
+class CheckpointTest {
+	@TempDir
+	File dir;
+
+	@ParameterizedTest
+	@ValueSource(booleans = { true, false })
+	void idaResumesWithinAnIteration(boolean inPlace) throws IOException {
+		NPuzzleState instance = new InstanceGenerator(4, 6).atDepth(40);
+		SearchStats whole = new SearchStats();
+		Node expected = Node.myIDA(board(instance, inPlace), Heuristic.numbered(2), whole);
+		assertNotNull(expected);
+
+		// Stop the search part of the way into its last iteration //
+		File file = new File(dir, "ida");
+		long lastIteration = whole.getIterationExpanded(whole.getIterations() - 1);
+		SearchStats cut = new SearchStats(whole.getGenerated() - lastIteration / 2);
+		try (CheckpointWriter checkpoints = new CheckpointWriter(file, 0)) {
+			assertNull(Node.myIDA(board(instance, inPlace), Heuristic.numbered(2), cut, checkpoints));
+			assertTrue(checkpoints.getWritten() > 0, "no checkpoint was written");
+		}
+
+		SearchStats resumed = new SearchStats();
+		Node goal = Node.resumeIDA(board(instance, inPlace), Heuristic.numbered(2), file, resumed, null);
+		assertNotNull(goal);
+		assertTrue(SearchOptimalityTest.solves(instance, goal.getActions()));
+		assertEquals(expected.getDepth(), goal.getDepth());
+		assertEquals(whole.getExpanded(), resumed.getExpanded(), "expanded");
+		assertEquals(whole.getGenerated(), resumed.getGenerated(), "generated");
+		assertEquals(whole.getDuplicates(), resumed.getDuplicates(), "duplicates");
+		assertEquals(whole.getIterations(), resumed.getIterations(), "iterations");
+		for (int i = 0; i < whole.getIterations(); i++)
+			assertEquals(whole.getIterationExpanded(i), resumed.getIterationExpanded(i), "expanded in iteration " + i);
+	}
+
+	@Test
+	void arenaAStarResumes() throws IOException {
+		NPuzzleState instance = new InstanceGenerator(4, 6).atDepth(36);
+		SearchStats whole = new SearchStats();
+		ArenaAStar search = ArenaAStar.withBudget(4, 2, 64L << 20, false);
+		assertTrue(search.search(new NPuzzleState(instance), whole) >= 0);
+
+		File file = new File(dir, "arena");
+		SearchStats cut = new SearchStats(whole.getGenerated() / 2);
+		try (CheckpointWriter checkpoints = new CheckpointWriter(file, 0)) {
+			search.setCheckpoints(checkpoints);
+			assertTrue(search.search(new NPuzzleState(instance), cut) < 0);
+			assertTrue(checkpoints.getWritten() > 0, "no checkpoint was written");
+		}
+
+		SearchStats resumed = new SearchStats();
+		ArenaAStar again = ArenaAStar.withBudget(4, 2, 64L << 20, false);
+		int found = again.resume(file, resumed);
+		assertTrue(found >= 0);
+		Action[] actions = again.getArena().getActions(found);
+		assertTrue(SearchOptimalityTest.solves(instance, actions));
+		assertEquals(whole.getSolutionDepth(), actions.length);
+		assertEquals(whole.getExpanded(), resumed.getExpanded(), "expanded");
+		assertEquals(whole.getGenerated(), resumed.getGenerated(), "generated");
+	}
+
+	private static State board(NPuzzleState instance, boolean inPlace) {
+		return inPlace ? new NPuzzleState(instance) : new ImmutableBoard(new NPuzzleState(instance));
+	}
+}
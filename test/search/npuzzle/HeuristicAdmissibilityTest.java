@@ -0,0 +1,61 @@
+package search.npuzzle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import search.ActionStatePair;
+import search.Heuristic;
+
+/**
+ * Every heuristic must stay within the true distance of sampled 3x3 boards, which a breadth-first
+ * search from the goal over the ranks of all solvable boards gives exactly.
+ */
+class HeuristicAdmissibilityTest {
+	/** The distance of every 3x3 board to the goal, indexed by rank */
+	private static byte[] distance;
+
+	@BeforeAll
+	static void enumerate() throws IOException {
+		// Pattern databases for heuristic 5 are built into a fresh directory //
+		System.setProperty("npuzzle.pdb.dir", Files.createTempDirectory("pdb").toString());
+
+		distance = new byte[(int) NPuzzleState.ranks(3)];
+		Arrays.fill(distance, (byte) -1);
+		int[] queue = new int[distance.length];
+		int head = 0, tail = 0;
+		int goal = (int) new NPuzzleState(3).rank();
+		distance[goal] = 0;
+		queue[tail++] = goal;
+		while (head < tail) {
+			int r = queue[head++];
+			for (ActionStatePair p : NPuzzleState.unrank(3, r).successor()) {
+				int next = (int) ((NPuzzleState) p.getState()).rank();
+				if (distance[next] >= 0) continue;
+				distance[next] = (byte) (distance[r] + 1);
+				queue[tail++] = next;
+			}
+		}
+		assertEquals(distance.length, tail, "every solvable board is reachable");
+		assertEquals(31, distance[queue[tail - 1]], "the hardest 3x3 boards are 31 moves away");
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = { 1, 2, 3, 4, 5, 6, 7 })
+	void neverOverestimates(int number) {
+		Heuristic h = NPuzzleHeuristic.numbered(number);
+		assertEquals(0, h.estimate(new NPuzzleState(3)), "the goal is estimated at 0");
+		for (int r = 0; r < distance.length; r += 37) {
+			NPuzzleState s = NPuzzleState.unrank(3, r);
+			int e = h.estimate(s);
+			assertTrue(e >= 0 && e <= distance[r], "H" + number + " estimates " + e + " for a board " + distance[r] + " moves away:\n" + s);
+		}
+	}
+}
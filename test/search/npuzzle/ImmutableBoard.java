@@ -0,0 +1,29 @@
+package search.npuzzle;
+
+import search.Action;
+import search.ActionStatePair;
+import search.MovePruner;
+import search.State;
+
+/**
+ * A board that hides its in-place moves, so IDA* searches it node by node.
+ */
+final class ImmutableBoard implements State {
+	private final NPuzzleState s;
+
+	ImmutableBoard(NPuzzleState s) {
+		this.s = s;
+	}
+
+	public boolean goal() { return s.goal(); }
+	public ActionStatePair[] successor() { return s.successor(); }
+	public ActionStatePair[] successor(Action last) { return s.successor(last); }
+	public MovePruner getMovePruner() { return s.getMovePruner(); }
+	public Action[] actions() { return s.actions(); }
+	public double pathcost(Action action) { return s.pathcost(action); }
+	public int getH1() { return s.getH1(); }
+	public int getH2() { return s.getH2(); }
+	public int getH3() { return s.getH3(); }
+	public int getH4() { return s.getH4(); }
+	public String toString() { return s.toString(); }
+}
@@ -0,0 +1,84 @@
+package search.npuzzle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rank and unrank must be inverse bijections, for placements and for whole boards.
+ */
+class PermutationRankingTest {
+	@Test
+	void everyPlacementRoundTrips() {
+		for (int n = 1; n <= 7; n++) {
+			for (int k = 0; k <= n; k++) {
+				PermutationRanking ranking = new PermutationRanking(n, k);
+				int[] positions = new int[k], scratch = ranking.newScratch();
+				Set<String> seen = new HashSet<String>();
+				for (long r = 0; r < ranking.size(); r++) {
+					ranking.unrank(r, positions, scratch);
+					boolean[] used = new boolean[n];
+					for (int p : positions) {
+						assertTrue(p >= 0 && p < n, "cell out of range");
+						assertFalse(used[p], "cell used twice");
+						used[p] = true;
+					}
+					assertTrue(seen.add(Arrays.toString(positions)), "placement unranked twice");
+					assertEquals(r, ranking.rank(positions, scratch), "n=" + n + " k=" + k);
+				}
+			}
+		}
+	}
+
+	@Test
+	void everyThreeByThreeBoardRoundTrips() {
+		long ranks = NPuzzleState.ranks(3);
+		assertEquals(181440, ranks);
+		for (long r = 0; r < ranks; r++) {
+			NPuzzleState s = NPuzzleState.unrank(3, r);
+			assertTrue(s.isSolvable(), "unranked an unsolvable board");
+			assertEquals(r, s.rank());
+		}
+	}
+
+	@Test
+	void fourByFourBoardsRoundTrip() {
+		Random random = new Random(42);
+		long ranks = NPuzzleState.ranks(4);
+		for (int i = 0; i < 20000; i++) {
+			long r = (random.nextLong() >>> 1) % ranks;
+			NPuzzleState s = NPuzzleState.unrank(4, r);
+			assertTrue(s.isSolvable());
+			assertEquals(r, s.rank());
+			assertEquals(s, NPuzzleState.unrank(4, s.rank()));
+		}
+	}
+
+	@Test
+	void parityCountsSwaps() {
+		assertTrue(PermutationRanking.isEven(new int[] { 0, 1, 2, 3 }));
+		assertFalse(PermutationRanking.isEven(new int[] { 1, 0, 2, 3 }));
+		assertTrue(PermutationRanking.isEven(new int[] { 1, 2, 0, 3 }));
+		assertFalse(PermutationRanking.isEven(new int[] { 1, 2, 3, 0 }));
+	}
+
+	@Test
+	void bitSetCountsEachRankOnce() {
+		RankBitSet set = new RankBitSet(200);
+		assertTrue(set.add(0));
+		assertTrue(set.add(199));
+		assertFalse(set.add(199));
+		assertTrue(set.contains(0) && set.contains(199) && !set.contains(64));
+		assertEquals(2, set.size());
+		set.clear();
+		assertEquals(0, set.size());
+		assertFalse(set.contains(199));
+	}
+}
@@ -0,0 +1,96 @@
+package search.npuzzle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import search.Action;
+import search.AnytimeAStar;
+import search.BidirectionalSearch;
+import search.Heuristic;
+import search.MutableState;
+import search.Node;
+import search.SearchStats;
+
+/**
+ * The optimal searches must agree on the cost of fixed instances of a known optimal depth, and
+ * their solutions must solve the instances.
+ */
+class SearchOptimalityTest {
+	@ParameterizedTest
+	@CsvSource({ "3, 1, 8", "3, 2, 20", "3, 3, 28", "4, 1, 16", "4, 2, 24", "4, 3, 30" })
+	void searchesAgreeOnTheOptimum(int size, long seed, int depth) {
+		NPuzzleState instance = new InstanceGenerator(size, seed).atDepth(depth);
+		NPuzzleState goal = new NPuzzleState(size);
+
+		SearchStats astar = new SearchStats();
+		assertSolves(instance, depth, Node.myHA(new NPuzzleState(instance), NPuzzleHeuristic.LINEAR_CONFLICT, astar), "A*");
+		assertTrue(astar.getHeuristicNanos() > 0, "heuristic time is measured without a profile");
+		assertSolves(instance, depth, Node.myIDA(new NPuzzleState(instance), NPuzzleHeuristic.LINEAR_CONFLICT, new SearchStats()), "IDA*");
+		assertSolves(instance, depth, Node.myIDA(new NPuzzleState(instance), NPuzzleHeuristic.parse("max(2,7)"), new SearchStats()), "IDA* max(2,7)");
+		assertSolves(instance, depth, Node.myHDA(new NPuzzleState(instance), NPuzzleHeuristic.LINEAR_CONFLICT, 4, new SearchStats()), "HDA*");
+		assertSolves(instance, depth, Node.myHDA(new NPuzzleState(instance), NPuzzleHeuristic.parse("max(7,6)"), 4, new SearchStats()), "HDA* max(7,6)");
+		AnytimeAStar.Solution ara = Node.myARA(new NPuzzleState(instance), NPuzzleHeuristic.parse("max(6,7)"), 2, 0.5, Long.MAX_VALUE, null, new SearchStats());
+		assertNotNull(ara, "ARA* found no solution");
+		assertEquals(1, ara.getBound(), "ARA* bound");
+		assertSolves(instance, depth, ara.getGoal(), "ARA* max(6,7)");
+		assertSolves(instance, depth, BidirectionalSearch.frontToEnd(new NPuzzleState(instance), goal,
+				NPuzzleSearchApp.MANHATTAN, false, new SearchStats()), "bidirectional A*");
+		assertSolves(instance, depth, BidirectionalSearch.frontToEnd(new NPuzzleState(instance), goal,
+				NPuzzleSearchApp.MANHATTAN, true, new SearchStats()), "parallel bidirectional A*");
+		if (size == 3) {
+			assertSolves(instance, depth, BidirectionalSearch.breadthFirst(new NPuzzleState(instance), goal, false,
+					new SearchStats()), "bidirectional BFS");
+		}
+
+		Action[] arena = ArenaAStar.withBudget(size, 6, 64L << 20, false).solve(new NPuzzleState(instance), new SearchStats());
+		assertNotNull(arena, "arena A* found no solution");
+		assertTrue(solves(instance, arena), "arena A* solution does not solve the instance");
+		assertEquals(depth, arena.length, "arena A*");
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "3, 4, 22", "4, 4, 26" })
+	void idaStatisticsDoNotDependOnTheStateBeingMutable(int size, long seed, int depth) {
+		NPuzzleState instance = new InstanceGenerator(size, seed).atDepth(depth);
+		SearchStats inPlace = new SearchStats(), nodes = new SearchStats();
+		assertTrue(instance.isMutable());
+		Node.myIDA(new NPuzzleState(instance), Heuristic.numbered(2), inPlace);
+		Node.myIDA(new ImmutableBoard(new NPuzzleState(instance)), Heuristic.numbered(2), nodes);
+		assertEquals(nodes.getExpanded(), inPlace.getExpanded(), "expanded");
+		assertEquals(nodes.getGenerated(), inPlace.getGenerated(), "generated");
+		assertEquals(nodes.getDuplicates(), inPlace.getDuplicates(), "duplicates");
+		assertSolves(instance, depth, Node.myIDA(MutableState.of(new ImmutableBoard(new NPuzzleState(instance))), Heuristic.numbered(2), new SearchStats()), "IDA* on MutableState");
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "3, 5, 24", "4, 5, 28" })
+	void aStarSearchesOnWhereTheOracleLostThePath(int size, long seed, int depth) {
+		NPuzzleState instance = new InstanceGenerator(size, seed).atDepth(depth);
+		SolutionCache cache = new SolutionCache(size, 2);
+		assertSolves(instance, depth, Node.myHA(new NPuzzleState(instance), 2, new SearchStats(), cache), "A* learning");
+		// Only the instance and the goal are left, so the best moves stop after one step //
+		assertEquals(depth, cache.distance(instance));
+		assertSolves(instance, depth, Node.myHA(new NPuzzleState(instance), 2, new SearchStats(), cache), "A* on an evicted path");
+	}
+
+	private static void assertSolves(NPuzzleState instance, int depth, Node goal, String search) {
+		assertNotNull(goal, search + " found no solution");
+		assertTrue(solves(instance, goal.getActions()), search + " solution does not solve the instance");
+		assertEquals(depth, goal.getDepth(), search);
+	}
+
+	/**
+	 * @param instance a board
+	 * @param actions actions, the last one first (as Node.getActions)
+	 * @return true if the actions take the board to the goal
+	 */
+	static boolean solves(NPuzzleState instance, Action[] actions) {
+		Action[] inOrder = new Action[actions.length];
+		for (int i = 0; i < actions.length; i++) inOrder[i] = actions[actions.length - 1 - i];
+		return NPuzzleSearchApp.checkActions(new NPuzzleState(instance), inOrder);
+	}
+}
@@ -0,0 +1,96 @@
+package search.npuzzle;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The board kernels on the Vector API. Only loaded (by BoardKernels) when the jdk.incubator.vector
+ * module is present.
+ *
+ * The cells are taken 16 (one 128-bit register) at a time, and the remaining few by the scalar
+ * loops. Wider registers and masked loads of a partial register were both measured slower than the
+ * scalar loops on the boards this solves, so neither is used. The cell index is the lane, so the
+ * row and column of each cell are plain loads of the byte tables. The goal row of a tile t is the number of multiples of the size,
+ * from the size up, that t - 1 reaches, and its goal column is the remainder; both are computed
+ * lane-wise with unsigned compares, as tiles of boards from 12x12 up do not fit a signed byte.
+ * Counts are mask popcounts; distances are widened to shorts before they are summed.
+ */
+final class VectorBoardKernels extends BoardKernels {
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+
+	String name() {
+		return "vector " + SPECIES.vectorBitSize() + "-bit";
+	}
+
+	int misplaced(byte[] cells, BoardTables t) {
+		int h = 0, i = 0;
+		for (; i + SPECIES.length() <= t.cells; i += SPECIES.length()) h += misplacedLanes(cells, t, i);
+		return h + misplaced(cells, t, i);
+	}
+
+	private static int misplacedLanes(byte[] cells, BoardTables t, int i) {
+		ByteVector tiles = ByteVector.fromArray(SPECIES, cells, i);
+		ByteVector goal = ByteVector.fromArray(SPECIES, t.goalCells, i);
+		return tiles.compare(VectorOperators.NE, goal).and(tiles.compare(VectorOperators.NE, (byte) 0)).trueCount();
+	}
+
+	int manhattan(byte[] cells, BoardTables t) {
+		int h = 0, i = 0;
+		for (; i + SPECIES.length() <= t.cells; i += SPECIES.length()) h += manhattanLanes(cells, t, i);
+		return h + manhattan(cells, t, i);
+	}
+
+	private static int manhattanLanes(byte[] cells, BoardTables t, int i) {
+		ByteVector tiles = ByteVector.fromArray(SPECIES, cells, i);
+		ByteVector index = tiles.sub((byte) 1);
+		ByteVector goalRow = goalRow(index, t.squareSize);
+		ByteVector goalCol = index.sub(goalRow.mul((byte) t.squareSize));
+		ByteVector d = ByteVector.fromArray(SPECIES, t.rowBytes, i).sub(goalRow).abs()
+				.add(ByteVector.fromArray(SPECIES, t.colBytes, i).sub(goalCol).abs())
+				.blend((byte) 0, tiles.compare(VectorOperators.EQ, (byte) 0));
+		return (int) (d.convert(VectorOperators.B2S, 0).reduceLanesToLong(VectorOperators.ADD)
+				+ d.convert(VectorOperators.B2S, 1).reduceLanesToLong(VectorOperators.ADD));
+	}
+
+	int rowColumn(byte[] cells, BoardTables t) {
+		int h = 0, i = 0;
+		for (; i + SPECIES.length() <= t.cells; i += SPECIES.length()) h += rowColumnLanes(cells, t, i);
+		return h + rowColumn(cells, t, i);
+	}
+
+	private static int rowColumnLanes(byte[] cells, BoardTables t, int i) {
+		ByteVector tiles = ByteVector.fromArray(SPECIES, cells, i);
+		VectorMask<Byte> tile = tiles.compare(VectorOperators.NE, (byte) 0);
+		ByteVector index = tiles.sub((byte) 1);
+		ByteVector goalRow = goalRow(index, t.squareSize);
+		ByteVector goalCol = index.sub(goalRow.mul((byte) t.squareSize));
+		return ByteVector.fromArray(SPECIES, t.rowBytes, i).compare(VectorOperators.NE, goalRow).and(tile).trueCount()
+				+ ByteVector.fromArray(SPECIES, t.colBytes, i).compare(VectorOperators.NE, goalCol).and(tile).trueCount();
+	}
+
+	/**
+	 * @param index the tiles minus one (unsigned)
+	 * @param size the size of the board
+	 * @return the goal rows of the tiles
+	 */
+	private static ByteVector goalRow(ByteVector index, int size) {
+		ByteVector row = ByteVector.zero(SPECIES);
+		for (int k = size; k < size * size; k += size) {
+			row = row.add((byte) 1, index.compare(VectorOperators.UNSIGNED_GE, (byte) k));
+		}
+		return row;
+	}
+
+	boolean equal(byte[] a, byte[] b) {
+		int i = 0;
+		for (; i + SPECIES.length() <= a.length; i += SPECIES.length()) {
+			if (ByteVector.fromArray(SPECIES, a, i).compare(VectorOperators.NE, ByteVector.fromArray(SPECIES, b, i)).anyTrue()) return false;
+		}
+		for (; i < a.length; i++) {
+			if (a[i] != b[i]) return false;
+		}
+		return true;
+	}
+}